@@ -0,0 +1,84 @@
+package lasers.bench;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: Bench.java
+ * @language: Java 14
+ *
+ * A small benchmark harness: warms an operation up, times it over several measured iterations and reports the
+ * average time and bytes allocated per operation, read from the JVM's per-thread allocation counter.
+ */
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+public class Bench {
+    private final int warmups;      // Iterations thrown away while the JIT settles
+    private final int iterations;   // Iterations that are measured
+    private final PrintStream out;  // Where the results are printed
+    private final com.sun.management.ThreadMXBean threads;
+
+    /**
+     * An operation being benchmarked. It runs a batch of operations and reports how many it ran.
+     */
+    public interface Batch {
+        /**
+         * @return the number of operations run.
+         * @throws Exception if the operation fails, which stops the benchmark.
+         */
+        long run() throws Exception;
+    }
+
+    /**
+     * @param warmups iterations thrown away while the JIT settles
+     * @param iterations iterations that are measured
+     * @param out where the results are printed.
+     */
+    public Bench(int warmups, int iterations, PrintStream out){
+        this.warmups = warmups;
+        this.iterations = iterations;
+        this.out = out;
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Runs a benchmark and prints one line of results.
+     * @param name the name printed with the results
+     * @param batch the operation being measured
+     * @throws Exception if the operation fails.
+     */
+    public void run(String name, Batch batch) throws Exception {
+        run(name, () -> 0, batch);
+    }
+
+    /**
+     * Runs a benchmark with an untimed setup step before every iteration, and prints one line of results.
+     * @param name the name printed with the results
+     * @param setup puts the state back before each iteration, not measured
+     * @param batch the operation being measured
+     * @throws Exception if the operation fails.
+     */
+    public void run(String name, Batch setup, Batch batch) throws Exception {
+        for(int i = 0; i < warmups; i++){
+            setup.run();
+            batch.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for(int i = 0; i < iterations; i++){
+            setup.run();
+            long allocated = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            ops += batch.run();
+            nanos += System.nanoTime() - start;
+            bytes += threads.getThreadAllocatedBytes(threadId) - allocated;
+        }
+        double nsPerOp = (double) nanos / ops;
+        double bytesPerOp = (double) bytes / ops;
+        double mbPerSec = bytes / (nanos / 1e9) / (1024 * 1024);
+        out.printf("%-36s %12.1f ns/op %12.1f B/op %10.1f MB/s alloc%n", name, nsPerOp, bytesPerOp, mbPerSec);
+    }
+}
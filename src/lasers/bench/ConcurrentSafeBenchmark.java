@@ -0,0 +1,104 @@
+package lasers.bench;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: ConcurrentSafeBenchmark.java
+ * @language: Java 14
+ *
+ * Stress tests the ConcurrentSafe: writer threads place and remove lasers at random on one shared 64x64 safe
+ * while one of them verifies it now and then, with 1, 2, 4 ... threads up to twice the cores. Throughput is
+ * printed for each thread count, and the board is checked afterwards against the moves that were reported as
+ * done. Run from the project root:
+ *      java lasers.bench.ConcurrentSafeBenchmark [moves-per-thread]
+ */
+
+import lasers.generator.SafeGenerator;
+import lasers.model.Card;
+import lasers.model.ConcurrentSafe;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConcurrentSafeBenchmark {
+    private static final int SIZE = 64;             // Rows and columns of the shared safe
+    private static final int VERIFY_EVERY = 1000;   // Moves the first thread makes between verifies
+
+    /**
+     * Runs every writer on a fresh copy of the safe.
+     * @param template the safe each run starts from
+     * @param threads the number of writer threads
+     * @param moves the moves each thread makes
+     * @return the moves per second of the run.
+     * @throws InterruptedException if the run is interrupted.
+     */
+    static double run(ConcurrentSafe template, int threads, int moves) throws InterruptedException {
+        ConcurrentSafe safe = new ConcurrentSafe(template);
+        LongAdder net = new LongAdder();        // Lasers added minus lasers removed
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] writers = new Thread[threads];
+        for(int t = 0; t < threads; t++){
+            long seed = t;
+            boolean verifier = t == 0;
+            writers[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                try{
+                    start.await();
+                }catch(InterruptedException e){
+                    return;
+                }
+                for(int i = 0; i < moves; i++){
+                    int row = random.nextInt(SIZE);
+                    int col = random.nextInt(SIZE);
+                    if(random.nextBoolean()){
+                        if(safe.add(row, col, Card.cType.LASER)){
+                            net.increment();
+                        }
+                    }else if(safe.remove(row, col)){
+                        net.decrement();
+                    }
+                    if(verifier && i % VERIFY_EVERY == 0){
+                        safe.verify();
+                    }
+                }
+            });
+            writers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for(Thread writer : writers){
+            writer.join();
+        }
+        long nanos = System.nanoTime() - begin;
+
+        //every move that reported success must show up on the board.
+        long lasers = 0;
+        for(int row = 0; row < SIZE; row++){
+            for(int col = 0; col < SIZE; col++){
+                if(safe.getCardType(row, col) == Card.cType.LASER){
+                    lasers++;
+                }
+            }
+        }
+        if(lasers != net.sum()){
+            throw new IllegalStateException(lasers + " lasers on the board, but " + net.sum() + " were placed");
+        }
+        return (double) threads * moves * 1e9 / nanos;
+    }
+
+    /**
+     * Runs the stress test for increasing thread counts.
+     * @param args optional moves made by each thread.
+     */
+    public static void main(String[] args) throws Exception {
+        int moves = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        ConcurrentSafe template = new ConcurrentSafe(new SafeGenerator(0.1, 0.1).generate(SIZE, SIZE, 1).toSafe());
+        int cores = Runtime.getRuntime().availableProcessors();
+        // One throwaway run so the first measured one is not mostly JIT.
+        run(template, 1, moves);
+        for(int threads = 1; threads <= 2 * cores; threads *= 2){
+            double rate = run(template, threads, moves);
+            System.out.printf("%2d threads: %,12.0f moves/s%n", threads, rate);
+        }
+    }
+}
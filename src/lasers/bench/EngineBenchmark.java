@@ -0,0 +1,113 @@
+package lasers.bench;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: EngineBenchmark.java
+ * @language: Java 14
+ *
+ * Benchmarks the backtracking and SAT engines on the same generated safes, from sparse to crowded with pillars,
+ * along with the engine Engine.forPuzzle would pick for each. Dense safes from Engine.LARGE cells up, where the
+ * SAT engine gets picked, are run too, with the backtracking search capped so it gives up instead of running for
+ * minutes. Run from the project root:
+ *      java lasers.bench.EngineBenchmark [warmups iterations]
+ */
+
+import lasers.generator.SafeGenerator;
+import lasers.solver.BacktrackSolver;
+import lasers.solver.Engine;
+import lasers.solver.Puzzle;
+import lasers.solver.SatEngine;
+
+import java.util.function.Supplier;
+
+public class EngineBenchmark {
+    private static final int[] SIZES = {8, 16, 32};
+    private static final double[] DENSITIES = {0.05, 0.15, 0.25};
+    private static final int PUZZLES = 8;   // Puzzles solved by each iteration
+    // Dense safes of at least Engine.LARGE cells, and the search nodes the backtracking engine gets on each.
+    private static final int[] LARGE_SIZES = {64, 128};
+    private static final double LARGE_DENSITY = 0.25;
+    private static final long MAX_NODES = 1 << 18;
+
+    /**
+     * Solves every puzzle with a fresh engine each time.
+     * @return the number of puzzles solved.
+     */
+    static long solveAll(Puzzle[] puzzles, Supplier<Engine> engines){
+        for(Puzzle puzzle : puzzles){
+            if(engines.get().solve(puzzle) == null){
+                throw new IllegalStateException("generated safe has no solution");
+            }
+        }
+        return puzzles.length;
+    }
+
+    /**
+     * Solves every puzzle with a fresh backtracking engine that gives up after MAX_NODES.
+     * @return the number of puzzles solved before the engine gave up.
+     */
+    static long solveCapped(Puzzle[] puzzles){
+        long solved = 0;
+        for(Puzzle puzzle : puzzles){
+            if(new BacktrackSolver(MAX_NODES).solve(puzzle) != null){
+                solved++;
+            }
+        }
+        return solved;
+    }
+
+    /**
+     * @return PUZZLES generated square safes.
+     */
+    private static Puzzle[] generate(int size, double density){
+        SafeGenerator generator = new SafeGenerator(density, 0.05);
+        Puzzle[] puzzles = new Puzzle[PUZZLES];
+        for(int i = 0; i < PUZZLES; i++){
+            puzzles[i] = new Puzzle(generator.generate(size, size, i).toSafe());
+        }
+        return puzzles;
+    }
+
+    /**
+     * Runs the engine Engine.forPuzzle picks on every puzzle.
+     * @return the number of puzzles.
+     */
+    private static long solvePicked(Puzzle[] puzzles){
+        for(Puzzle puzzle : puzzles){
+            Engine.forPuzzle(puzzle).solve(puzzle);
+        }
+        return puzzles.length;
+    }
+
+    /**
+     * Runs the benchmarks.
+     * @param args optional warmup and measured iteration counts.
+     */
+    public static void main(String[] args) throws Exception {
+        int warmups = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Bench bench = new Bench(warmups, iterations, System.out);
+        for(int size : SIZES){
+            for(double density : DENSITIES){
+                Puzzle[] puzzles = generate(size, density);
+                String name = size + "x" + size + " density " + density;
+                bench.run(name + " backtrack", () -> solveAll(puzzles, BacktrackSolver::new));
+                bench.run(name + " sat", () -> solveAll(puzzles, SatEngine::new));
+                bench.run(name + " picked", () -> solvePicked(puzzles));
+            }
+        }
+        for(int size : LARGE_SIZES){
+            Puzzle[] puzzles = generate(size, LARGE_DENSITY);
+            String name = size + "x" + size + " density " + LARGE_DENSITY;
+            long[] solved = new long[1];
+            bench.run(name + " backtrack capped", () -> {
+                solved[0] = solveCapped(puzzles);
+                return puzzles.length;
+            });
+            System.out.println("    backtracking solved " + solved[0] + " of " + PUZZLES + " within " + MAX_NODES
+                    + " nodes");
+            bench.run(name + " sat", () -> solveAll(puzzles, SatEngine::new));
+            bench.run(name + " picked", () -> solvePicked(puzzles));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package lasers.bench;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SafeBenchmark.java
+ * @language: Java 14
+ *
+ * Benchmarks loading a safe and the add, remove and verify operations of Safe, on the safes in data/ and on
+ * generated safes from 8x8 up to 256x256. Run from the project root:
+ *      java lasers.bench.SafeBenchmark [warmups iterations]
+ */
+
+import lasers.model.Card;
+import lasers.model.Safe;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class SafeBenchmark {
+    private static final int[] SIZES = {8, 16, 32, 64, 128, 256};
+    private static final int LASERS = 64;   // Lasers placed and removed by each add/remove iteration
+
+    /**
+     * Writes a square safe with roughly one pillar in ten cells to a temporary file.
+     * @param size rows and columns of the safe
+     * @param seed seed for the pillar layout
+     * @return the file written.
+     * @throws IOException if the file can not be written.
+     */
+    static File generate(int size, long seed) throws IOException {
+        Random random = new Random(seed);
+        File file = File.createTempFile("safe" + size + "x" + size, ".txt");
+        file.deleteOnExit();
+        try(PrintWriter out = new PrintWriter(file)){
+            out.println(size + " " + size);
+            for(int row = 0; row < size; row++){
+                StringBuilder line = new StringBuilder();
+                for(int col = 0; col < size; col++){
+                    if(col > 0){
+                        line.append(' ');
+                    }
+                    if(random.nextInt(10) == 0){
+                        int nLasers = random.nextInt(6);
+                        line.append(nLasers > 4 ? "X" : String.valueOf(nLasers));
+                    }else{
+                        line.append('.');
+                    }
+                }
+                out.println(line);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Picks floor cells to place lasers on, in a fixed random order.
+     * @param safe the loaded safe
+     * @return up to LASERS floor cells as {row, col}.
+     */
+    static List<int[]> floorCells(Safe safe){
+        List<int[]> cells = new ArrayList<>();
+        for(int row = 0; row < safe.getRows(); row++){
+            for(int col = 0; col < safe.getCols(); col++){
+                if(safe.getCardType(row, col) != Card.cType.PILLAR){
+                    cells.add(new int[]{row, col});
+                }
+            }
+        }
+        Collections.shuffle(cells, new Random(42));
+        return cells.subList(0, Math.min(LASERS, cells.size()));
+    }
+
+    /**
+     * Runs every benchmark on one safe file.
+     * @param bench the harness
+     * @param name the name of the safe in the results
+     * @param file the safe file
+     * @throws Exception if a benchmark fails.
+     */
+    static void benchmark(Bench bench, String name, String file) throws Exception {
+        bench.run(name + " makeSafe", () -> {
+            Safe.load(file);
+            return 1;
+        });
+
+        Safe safe = Safe.load(file);
+        List<int[]> cells = floorCells(safe);
+        //resetTo also starts a new history, so the journal does not grow from one iteration to the next.
+        boolean[] none = new boolean[safe.getRows() * safe.getCols()];
+        boolean[] all = new boolean[none.length];
+        boolean[] half = new boolean[none.length];
+        for(int i = 0; i < cells.size(); i++){
+            int cell = cells.get(i)[0] * safe.getCols() + cells.get(i)[1];
+            all[cell] = true;
+            half[cell] = i % 2 == 0;
+        }
+        // add: start each iteration from an empty safe and place every laser.
+        bench.run(name + " add", () -> {
+            safe.resetTo(none);
+            return 0;
+        }, () -> {
+            for(int[] cell : cells){
+                safe.add(cell[0], cell[1], Card.cType.LASER);
+            }
+            return cells.size();
+        });
+        // remove: start each iteration with every laser placed and take them all off.
+        bench.run(name + " remove", () -> {
+            safe.resetTo(all);
+            return 0;
+        }, () -> {
+            for(int[] cell : cells){
+                safe.remove(cell[0], cell[1]);
+            }
+            return cells.size();
+        });
+        // verify a board with half of the lasers on it.
+        safe.resetTo(half);
+        bench.run(name + " verify", () -> {
+            for(int i = 0; i < 100; i++){
+                safe.verify();
+            }
+            return 100;
+        });
+    }
+
+    /**
+     * Runs the benchmarks.
+     * @param args optional warmup and measured iteration counts.
+     */
+    public static void main(String[] args) throws Exception {
+        int warmups = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Bench bench = new Bench(warmups, iterations, System.out);
+        benchmark(bench, "safe0", "data/safe0.txt");
+        benchmark(bench, "safe1", "data/safe1.txt");
+        for(int size : SIZES){
+            benchmark(bench, size + "x" + size, generate(size, size).getPath());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package lasers.generator;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: GeneratedSafe.java
+ * @language: Java 14
+ *
+ * A safe made by the SafeGenerator along with the laser placement it was built around.
+ */
+
+import lasers.model.Safe;
+import lasers.model.SafeWriter;
+import lasers.solver.Solution;
+
+public class GeneratedSafe {
+    private final int rows;             // Rows in the safe
+    private final int cols;             // Columns in the safe
+    private final byte[] grid;          // FLOOR or the lasers each pillar needs, as read by the SafeReader
+    private final boolean[] lasers;     // Cells holding a laser in the known solution
+
+    GeneratedSafe(int rows, int cols, byte[] grid, boolean[] lasers){
+        this.rows = rows;
+        this.cols = cols;
+        this.grid = grid;
+        this.lasers = lasers;
+    }
+
+    /** Getters **/
+    public int getRows(){
+        return this.rows;
+    }
+
+    public int getCols(){
+        return this.cols;
+    }
+
+    /**
+     * @return a new Safe with this safe's pillars and no lasers.
+     */
+    public Safe toSafe(){
+        return new Safe(rows, cols, grid);
+    }
+
+    /**
+     * @return the laser placement the safe was built around.
+     */
+    public Solution getSolution(){
+        int count = 0;
+        for(boolean laser : lasers){
+            if(laser){
+                count++;
+            }
+        }
+        int[] cells = new int[count];
+        int i = 0;
+        for(int cell = 0; cell < lasers.length; cell++){
+            if(lasers[cell]){
+                cells[i++] = cell;
+            }
+        }
+        return new Solution(cols, cells);
+    }
+
+    /**
+     * Writes the safe in the SafeFile format, followed by its solution the same way the files in data/ show
+     * one. The solution is skipped by the SafeReader, so these can be concatenated into one archive.
+     * @param out where the safe is written.
+     */
+    public void write(StringBuilder out){
+        SafeWriter.write(out, rows, cols, grid, lasers);
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder out = new StringBuilder();
+        write(out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,155 @@
+package lasers.generator;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SafeGenerator.java
+ * @language: Java 14
+ *
+ * Builds random safes that are guaranteed to have a solution. Pillars are scattered first, then lasers are
+ * placed in a random order wherever they would not see another laser. Once no more lasers fit, every floor
+ * cell is lit (a dark cell could still have taken one), so the layout is a solution and the pillar numbers
+ * are simply read off it.
+ */
+
+import lasers.model.SafeReader;
+import lasers.solver.Puzzle;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+public class SafeGenerator {
+    private static final int CHUNK = 4096;  // Safes generated in parallel before they are written
+
+    private final double density;       // Chance of each cell being a pillar
+    private final double anyChance;     // Chance of a pillar being written as 'X'
+
+    /**
+     * @param density the chance of each cell being a pillar, 0 to 1
+     * @param anyChance the chance of a pillar being an 'X' that accepts any amount of lasers.
+     */
+    public SafeGenerator(double density, double anyChance){
+        this.density = density;
+        this.anyChance = anyChance;
+    }
+
+    /**
+     * Generates one safe. The same seed always gives the same safe.
+     * @param rows rows in the safe
+     * @param cols columns in the safe
+     * @param seed the random seed
+     * @return the safe and the solution it was built around.
+     */
+    public GeneratedSafe generate(int rows, int cols, long seed){
+        SplittableRandom random = new SplittableRandom(seed);
+        int size = rows * cols;
+        byte[] grid = new byte[size];
+        for(int cell = 0; cell < size; cell++){
+            grid[cell] = random.nextDouble() < density ? 0 : SafeReader.FLOOR;
+        }
+
+        //the puzzle numbers the row and column segments, so lasers can check for each other in constant time.
+        Puzzle puzzle = Puzzle.fromGrid(rows, cols, grid);
+
+        //visit the cells in a random order, placing a laser wherever its segments are still dark.
+        int[] order = new int[size];
+        for(int i = 0; i < size; i++){
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        boolean[] rowLit = new boolean[puzzle.getRowSegments()];
+        boolean[] colLit = new boolean[puzzle.getColSegments()];
+        boolean[] lasers = new boolean[size];
+        for(int cell : order){
+            int rowSeg = puzzle.getRowSegment(cell);
+            int colSeg = puzzle.getColSegment(cell);
+            if(rowSeg >= 0 && !rowLit[rowSeg] && !colLit[colSeg]){
+                lasers[cell] = true;
+                rowLit[rowSeg] = true;
+                colLit[colSeg] = true;
+            }
+        }
+
+        //read the pillar numbers off the lasers around them.
+        for(int cell = 0; cell < size; cell++){
+            if(grid[cell] != SafeReader.FLOOR){
+                if(random.nextDouble() < anyChance){
+                    grid[cell] = 10;
+                }else{
+                    grid[cell] = (byte)adjacentLasers(lasers, rows, cols, cell);
+                }
+            }
+        }
+        return new GeneratedSafe(rows, cols, grid, lasers);
+    }
+
+    /**
+     * @return the lasers in the cardinal directions around a cell.
+     */
+    private static int adjacentLasers(boolean[] lasers, int rows, int cols, int cell){
+        int row = cell / cols;
+        int col = cell % cols;
+        int count = 0;
+        // Order: Bottom, Top, Right, Left.
+        if(row + 1 < rows && lasers[cell + cols]){
+            count++;
+        }if(row - 1 >= 0 && lasers[cell - cols]){
+            count++;
+        }if(col + 1 < cols && lasers[cell + 1]){
+            count++;
+        }if(col - 1 >= 0 && lasers[cell - 1]){
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Generates safes in parallel and writes them in order, one chunk at a time so memory stays bounded.
+     * Safe i uses seed + i, so a run can be reproduced or split across machines.
+     * @param rows rows in each safe
+     * @param cols columns in each safe
+     * @param count the number of safes
+     * @param seed the seed of the first safe
+     * @param out where the safes are written
+     * @throws IOException if writing fails.
+     */
+    public void generateAll(int rows, int cols, long count, long seed, Writer out) throws IOException {
+        for(long start = 0; start < count; start += CHUNK){
+            long first = start;
+            int n = (int)Math.min(CHUNK, count - start);
+            String[] chunk = IntStream.range(0, n).parallel()
+                    .mapToObj(i -> generate(rows, cols, seed + first + i) + "\n")
+                    .toArray(String[]::new);
+            for(String safe : chunk){
+                out.write(safe);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes random safes to a file or the console.
+     * @param args rows cols count [density] [seed] [output-file]
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 3 || args.length > 6){
+            System.out.println("Usage: java SafeGenerator rows cols count [density] [seed] [output-file]");
+            return;
+        }
+        int rows = Integer.parseInt(args[0]);
+        int cols = Integer.parseInt(args[1]);
+        long count = Long.parseLong(args[2]);
+        double density = args.length > 3 ? Double.parseDouble(args[3]) : 0.15;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+        SafeGenerator generator = new SafeGenerator(density, 0.1);
+        try(Writer out = args.length > 5 ? new BufferedWriter(new FileWriter(args[5]))
+                : new BufferedWriter(new OutputStreamWriter(System.out))){
+            generator.generateAll(rows, cols, count, seed, out);
+        }
+    }
+}
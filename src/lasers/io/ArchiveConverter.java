@@ -0,0 +1,81 @@
+package lasers.io;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: ArchiveConverter.java
+ * @language: Java 14
+ *
+ * Converts SafeFiles to binary archives and back. Every safe in the text files goes into the archive along with
+ * the solution written under it, if there is one, and converting back writes them out the same way.
+ * Run from the project root:
+ *      java lasers.io.ArchiveConverter pack archive-file safe-file...
+ *      java lasers.io.ArchiveConverter unpack archive-file safe-file
+ */
+
+import lasers.model.SafeReader;
+import lasers.model.SafeWriter;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+public class ArchiveConverter {
+
+    /**
+     * Packs every safe of some SafeFiles into one archive.
+     * @param archive the archive written
+     * @param safeFiles the SafeFiles read, in order
+     * @return the number of safes packed.
+     * @throws IOException if a file can not be read or written.
+     */
+    public static long pack(String archive, String... safeFiles) throws IOException {
+        try(SafeArchiveWriter out = new SafeArchiveWriter(archive)){
+            for(String safeFile : safeFiles){
+                SafeReader reader = SafeReader.open(safeFile);
+                while(reader.advance()){
+                    out.add(reader.getRows(), reader.getCols(), reader.getGrid(), reader.readSolution());
+                }
+            }
+            return out.getCount();
+        }
+    }
+
+    /**
+     * Writes every safe of an archive to one SafeFile.
+     * @param archive the archive read
+     * @param safeFile the SafeFile written
+     * @return the number of safes unpacked.
+     * @throws IOException if a file can not be read or written.
+     */
+    public static long unpack(String archive, String safeFile) throws IOException {
+        try(SafeArchive in = new SafeArchive(archive); Writer out = new BufferedWriter(new FileWriter(safeFile))){
+            StringBuilder text = new StringBuilder();
+            for(long i = 0; i < in.size(); i++){
+                text.setLength(0);
+                SafeWriter.write(text, in.getRows(i), in.getCols(i), in.getGrid(i), in.getSolution(i));
+                //a blank line between safes, as the SafeGenerator writes them.
+                text.append('\n');
+                out.append(text);
+            }
+            return in.size();
+        }
+    }
+
+    /**
+     * The main method; packs or unpacks an archive.
+     * @param args pack archive-file safe-file..., or unpack archive-file safe-file.
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length >= 3 && args[0].equals("pack")){
+            String[] safeFiles = new String[args.length - 2];
+            System.arraycopy(args, 2, safeFiles, 0, safeFiles.length);
+            System.out.println(pack(args[1], safeFiles) + " safes packed into " + args[1]);
+        }else if(args.length == 3 && args[0].equals("unpack")){
+            System.out.println(unpack(args[1], args[2]) + " safes unpacked into " + args[2]);
+        }else{
+            System.out.println("Usage: java ArchiveConverter pack archive-file safe-file...\n" +
+                    "       java ArchiveConverter unpack archive-file safe-file");
+        }
+    }
+}
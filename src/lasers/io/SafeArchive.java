@@ -0,0 +1,206 @@
+package lasers.io;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SafeArchive.java
+ * @language: Java 14
+ *
+ * Reads a binary archive of many safes through FileChannel.map, loading any safe by its index without touching
+ * the others. All numbers are big endian. The file is laid out as:
+ *      header  magic "LSAF", version (2 bytes), flags (2 bytes), safe count (8 bytes), index offset (8 bytes)
+ *      safes   rows (4 bytes), columns (4 bytes), flags (1 byte),
+ *              the grid at 4 bits a cell: 0 floor, 1-5 a pillar needing 0-4 lasers, 6 an 'X' pillar,
+ *              and when flag HAS_SOLUTION is set, a bitmap of the solution's lasers at 1 bit a cell
+ *      index   the offset of every safe (8 bytes each)
+ * Files larger than a single mapping can hold are mapped in overlapping windows, so any safe can be read from
+ * exactly one window.
+ */
+
+import lasers.model.Safe;
+import lasers.model.SafeReader;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class SafeArchive implements AutoCloseable {
+    static final int MAGIC = 0x4c534146;    // "LSAF"
+    static final short VERSION = 1;
+    static final int HEADER = 24;           // Bytes in the header
+    static final int HAS_SOLUTION = 1;      // Safe flag, set when a solution bitmap follows the grid
+
+    private static final int WINDOW_SHIFT = 30;                 // A window starts every 1GB...
+    private static final long WINDOW_SIZE = Integer.MAX_VALUE;  // ...and is 2GB long, so a safe fits in one
+
+    private final FileChannel channel;
+    private final long size;                // Bytes in the file
+    private final AtomicReferenceArray<MappedByteBuffer> windows;  // Mapped on first use
+    private final long count;               // Safes in the archive
+    private final long indexOffset;         // Where the offset index starts
+
+    /**
+     * Opens an archive.
+     * @param path the archive written by a SafeArchiveWriter
+     * @throws IOException if the file can not be read or is not an archive.
+     */
+    public SafeArchive(String path) throws IOException {
+        this.channel = FileChannel.open(Paths.get(path));
+        this.size = channel.size();
+        this.windows = new AtomicReferenceArray<>((int)(size >>> WINDOW_SHIFT) + 1);
+        if(size < HEADER || getInt(0) != MAGIC){
+            channel.close();
+            throw new IOException(path + " is not a safe archive");
+        }
+        int version = window(4).getShort(4);
+        if(version != VERSION){
+            channel.close();
+            throw new IOException(path + " is archive version " + version + ", expected " + VERSION);
+        }
+        this.count = getLong(8);
+        this.indexOffset = getLong(16);
+    }
+
+    /**
+     * @return the number of safes in the archive.
+     */
+    public long size(){
+        return this.count;
+    }
+
+    /** Getters for the i'th safe **/
+    public int getRows(long i){
+        return getInt(offset(i));
+    }
+
+    public int getCols(long i){
+        return getInt(offset(i) + 4);
+    }
+
+    public boolean hasSolution(long i){
+        return (getByte(offset(i) + 8) & HAS_SOLUTION) != 0;
+    }
+
+    /**
+     * @param i which safe
+     * @return SafeReader.FLOOR or the amount of lasers each pillar needs ('X' being 10), row major.
+     */
+    public byte[] getGrid(long i){
+        long offset = offset(i);
+        int size = getInt(offset) * getInt(offset + 4);
+        MappedByteBuffer window = window(offset);
+        int at = (int)(offset + 9 - start(offset));
+        byte[] grid = new byte[size];
+        for(int cell = 0; cell < size; cell += 2){
+            int packed = window.get(at++);
+            grid[cell] = decode((packed >>> 4) & 0xf);
+            if(cell + 1 < size){
+                grid[cell + 1] = decode(packed & 0xf);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * @param i which safe
+     * @return the cells holding a laser in the safe's solution, row major, or null if it was stored without one.
+     */
+    public boolean[] getSolution(long i){
+        if(!hasSolution(i)){
+            return null;
+        }
+        long offset = offset(i);
+        int size = getInt(offset) * getInt(offset + 4);
+        MappedByteBuffer window = window(offset);
+        int at = (int)(offset + 9 + (size + 1) / 2 - start(offset));
+        boolean[] lasers = new boolean[size];
+        for(int cell = 0; cell < size; cell += 8){
+            int bits = window.get(at++);
+            for(int b = 0; b < 8 && cell + b < size; b++){
+                lasers[cell + b] = (bits & (1 << b)) != 0;
+            }
+        }
+        return lasers;
+    }
+
+    /**
+     * @param i which safe
+     * @return a new Safe with the i'th safe's pillars and no lasers.
+     */
+    public Safe load(long i){
+        return new Safe(getRows(i), getCols(i), getGrid(i));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return the 4 bit code of a grid value.
+     */
+    static int encode(byte value){
+        if(value == SafeReader.FLOOR){
+            return 0;
+        }
+        return value > 4 ? 6 : value + 1;
+    }
+
+    private static byte decode(int code){
+        if(code == 0){
+            return SafeReader.FLOOR;
+        }
+        return code == 6 ? 10 : (byte)(code - 1);
+    }
+
+    /**
+     * @return where the i'th safe starts.
+     */
+    private long offset(long i){
+        if(i < 0 || i >= count){
+            throw new IndexOutOfBoundsException("Safe " + i + " of " + count);
+        }
+        return getLong(indexOffset + i * 8);
+    }
+
+    /**
+     * @return the first byte of the window that holds the bytes starting at an offset.
+     */
+    private static long start(long offset){
+        return (offset >>> WINDOW_SHIFT) << WINDOW_SHIFT;
+    }
+
+    /**
+     * @return the mapped window that holds the bytes starting at an offset, mapping it if needed.
+     */
+    private MappedByteBuffer window(long offset){
+        int w = (int)(offset >>> WINDOW_SHIFT);
+        MappedByteBuffer window = windows.get(w);
+        if(window == null){
+            long start = start(offset);
+            try{
+                window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+            }catch(IOException e){
+                throw new IllegalStateException("Can not map the archive at " + start, e);
+            }
+            //two threads may map the same window, only one mapping is kept.
+            if(!windows.compareAndSet(w, null, window)){
+                window = windows.get(w);
+            }
+        }
+        return window;
+    }
+
+    private byte getByte(long offset){
+        return window(offset).get((int)(offset - start(offset)));
+    }
+
+    private int getInt(long offset){
+        return window(offset).getInt((int)(offset - start(offset)));
+    }
+
+    private long getLong(long offset){
+        return window(offset).getLong((int)(offset - start(offset)));
+    }
+}
@@ -0,0 +1,107 @@
+package lasers.io;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SafeArchiveWriter.java
+ * @language: Java 14
+ *
+ * Writes safes into a binary archive that SafeArchive can read. Safes are appended one after another and the
+ * offset index is written when the archive is closed; the layout of the file is described in SafeArchive.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+public class SafeArchiveWriter implements AutoCloseable {
+    private final String path;          // The archive being written
+    private final DataOutputStream out;
+    private long position;              // Bytes written so far
+    private long[] offsets = new long[1024];    // Where every safe written so far starts
+    private long count;                 // Safes written so far
+
+    /**
+     * Creates the archive, replacing any file already at the path.
+     * @param path where the archive is written
+     * @throws IOException if the file can not be created.
+     */
+    public SafeArchiveWriter(String path) throws IOException {
+        this.path = path;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+        //the count and index offset are filled in by close.
+        out.writeInt(SafeArchive.MAGIC);
+        out.writeShort(SafeArchive.VERSION);
+        out.writeShort(0);
+        out.writeLong(0);
+        out.writeLong(0);
+        this.position = SafeArchive.HEADER;
+    }
+
+    /**
+     * Appends a safe.
+     * @param rows rows in the safe
+     * @param cols columns in the safe
+     * @param grid SafeReader.FLOOR or the amount of lasers each pillar needs, row major
+     * @param lasers the cells holding a laser in a solution, or null if there is none.
+     * @throws IOException if the safe can not be written.
+     */
+    public void add(int rows, int cols, byte[] grid, boolean[] lasers) throws IOException {
+        int size = rows * cols;
+        if(count == offsets.length){
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[(int)count++] = position;
+        out.writeInt(rows);
+        out.writeInt(cols);
+        out.writeByte(lasers == null ? 0 : SafeArchive.HAS_SOLUTION);
+        //two cells to a byte, the first cell in the high half.
+        for(int cell = 0; cell < size; cell += 2){
+            int high = SafeArchive.encode(grid[cell]);
+            int low = cell + 1 < size ? SafeArchive.encode(grid[cell + 1]) : 0;
+            out.writeByte((high << 4) | low);
+        }
+        long length = 9 + (size + 1) / 2;
+        if(lasers != null){
+            //eight cells to a byte, the first cell in the lowest bit.
+            for(int cell = 0; cell < size; cell += 8){
+                int bits = 0;
+                for(int i = 0; i < 8 && cell + i < size; i++){
+                    if(lasers[cell + i]){
+                        bits |= 1 << i;
+                    }
+                }
+                out.writeByte(bits);
+            }
+            length += (size + 7) / 8;
+        }
+        position += length;
+    }
+
+    /**
+     * @return the number of safes written so far.
+     */
+    public long getCount(){
+        return this.count;
+    }
+
+    /**
+     * Writes the offset index and fills in the header.
+     * @throws IOException if the archive can not be finished.
+     */
+    @Override
+    public void close() throws IOException {
+        long indexOffset = position;
+        for(long i = 0; i < count; i++){
+            out.writeLong(offsets[(int)i]);
+        }
+        out.close();
+        try(RandomAccessFile file = new RandomAccessFile(path, "rw")){
+            file.seek(8);
+            file.writeLong(count);
+            file.writeLong(indexOffset);
+        }
+    }
+}
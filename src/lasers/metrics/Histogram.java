@@ -0,0 +1,118 @@
+package lasers.metrics;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: Histogram.java
+ * @language: Java 14
+ *
+ * A lock-free histogram of non-negative values, such as latencies in nanoseconds. Values under 16 get a bucket
+ * each, above that every power of two is split into 8 buckets, so any recorded value is known to within 12.5%
+ * across the whole range of a long while the histogram stays under 500 counters.
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Histogram {
+    private static final int SUB_BITS = 3;                  // 2^SUB_BITS buckets per power of two
+    private static final int LINEAR = 2 << SUB_BITS;        // Values below this get a bucket each
+    private static final int BUCKETS = LINEAR + (63 - (SUB_BITS + 1)) * (1 << SUB_BITS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();        // Values recorded
+    private final LongAdder sum = new LongAdder();          // Total of the values recorded
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one value, negative values count as 0.
+     * @param value the value to record.
+     */
+    public void record(long value){
+        value = Math.max(value, 0);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return the bucket a value falls in.
+     */
+    static int bucket(long value){
+        if(value < LINEAR){
+            return (int)value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int)(value >>> (exp - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return LINEAR + (exp - SUB_BITS - 1) * (1 << SUB_BITS) + sub;
+    }
+
+    /**
+     * @return the largest value that falls in a bucket.
+     */
+    static long highest(int bucket){
+        if(bucket < LINEAR){
+            return bucket;
+        }
+        int exp = (bucket - LINEAR) / (1 << SUB_BITS) + SUB_BITS + 1;
+        long sub = (bucket - LINEAR) % (1 << SUB_BITS);
+        long low = ((1L << SUB_BITS) + sub) << (exp - SUB_BITS);
+        return low + (1L << (exp - SUB_BITS)) - 1;
+    }
+
+    /** Getters **/
+    public long getCount(){
+        return count.sum();
+    }
+
+    public long getSum(){
+        return sum.sum();
+    }
+
+    public long getMax(){
+        return max.get();
+    }
+
+    public double getMean(){
+        long n = count.sum();
+        return n == 0 ? 0 : (double)sum.sum() / n;
+    }
+
+    /**
+     * @param percentile the percentile wanted, 0 to 100
+     * @return a value at least as large as that share of the values recorded, within 12.5%.
+     */
+    public long getPercentile(double percentile){
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for(int b = 0; b < BUCKETS; b++){
+            snapshot[b] = counts.get(b);
+            total += snapshot[b];
+        }
+        if(total == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long)Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for(int b = 0; b < BUCKETS; b++){
+            seen += snapshot[b];
+            if(seen >= rank){
+                return Math.min(highest(b), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Forgets every value. Values recorded at the same time may be partly kept.
+     */
+    public void reset(){
+        for(int b = 0; b < BUCKETS; b++){
+            counts.set(b, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+}
@@ -0,0 +1,177 @@
+package lasers.metrics;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: Metrics.java
+ * @language: Java 14
+ *
+ * Opt-in instrumentation for the model, the PTUI and the solvers. It is switched on by starting the JVM with
+ * -Dlasers.metrics=true; ENABLED is a constant, so while it is off the JIT drops every
+ * "if(Metrics.ENABLED)" block and the instrumented code runs exactly as it would without it.
+ * When on, the metrics are registered over JMX as lasers:type=Metrics, and -Dlasers.metrics.dump=seconds
+ * also prints them to standard error on that period.
+ */
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.management.ObjectName;
+
+public final class Metrics {
+    /** Whether anything is recorded, fixed for the life of the JVM. */
+    public static final boolean ENABLED = Boolean.getBoolean("lasers.metrics");
+
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService dumper;     // Runs the periodic dump, null if there is none
+
+    static{
+        if(ENABLED){
+            register();
+            long period = Long.getLong("lasers.metrics.dump", 0);
+            if(period > 0){
+                startDump(period, System.err);
+            }
+        }
+    }
+
+    private Metrics(){
+    }
+
+    /**
+     * Finds a metric, creating it the first time it is asked for. Callers keep the result in a static field
+     * so the lookup only happens once.
+     * @param name the name of the metric, such as "safe.add"
+     * @return the histogram recording it.
+     */
+    public static Histogram histogram(String name){
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Records the time since a start, when metrics are on.
+     * @param histogram where the time goes
+     * @param start a System.nanoTime() taken when the operation started.
+     */
+    public static void since(Histogram histogram, long start){
+        if(ENABLED){
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return System.nanoTime() when metrics are on, otherwise 0 without reading the clock.
+     */
+    public static long start(){
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @return every metric as "name count=.. mean=.. p50=.. p99=.. max=..", one per line, sorted by name.
+     */
+    public static String report(){
+        StringBuilder out = new StringBuilder();
+        for(Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()){
+            Histogram h = entry.getValue();
+            out.append(entry.getKey())
+                    .append(" count=").append(h.getCount())
+                    .append(" mean=").append(Math.round(h.getMean()))
+                    .append(" p50=").append(h.getPercentile(50))
+                    .append(" p99=").append(h.getPercentile(99))
+                    .append(" max=").append(h.getMax())
+                    .append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Prints the report on a fixed period from a background thread, replacing any dump already running.
+     * @param seconds the period
+     * @param out where the report is printed.
+     */
+    public static synchronized void startDump(long seconds, PrintStream out){
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "lasers-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> out.println(report()), seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    public static synchronized void stopDump(){
+        if(dumper != null){
+            dumper.shutdown();
+            dumper = null;
+        }
+    }
+
+    /**
+     * Forgets every value recorded so far.
+     */
+    public static void reset(){
+        for(Histogram h : histograms.values()){
+            h.reset();
+        }
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, failing quietly if they already are.
+     */
+    private static void register(){
+        try{
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName("lasers:type=Metrics"));
+        }catch(Exception e){
+            System.err.println("Could not register metrics over JMX: " + e);
+        }
+    }
+
+    /**
+     * @return one value per metric, sorted by name.
+     */
+    private static <T> Map<String, T> each(Function<Histogram, T> value){
+        Map<String, T> values = new TreeMap<>();
+        for(Map.Entry<String, Histogram> entry : histograms.entrySet()){
+            values.put(entry.getKey(), value.apply(entry.getValue()));
+        }
+        return values;
+    }
+
+    /**
+     * The JMX view of the metrics.
+     */
+    private static class Bean implements MetricsMXBean {
+        public String getReport(){
+            return report();
+        }
+
+        public Map<String, Long> getCounts(){
+            return each(Histogram::getCount);
+        }
+
+        public Map<String, Double> getMeans(){
+            return each(Histogram::getMean);
+        }
+
+        public Map<String, Long> getMedians(){
+            return each(h -> h.getPercentile(50));
+        }
+
+        public Map<String, Long> getP99s(){
+            return each(h -> h.getPercentile(99));
+        }
+
+        public Map<String, Long> getMaxes(){
+            return each(Histogram::getMax);
+        }
+
+        public void reset(){
+            Metrics.reset();
+        }
+    }
+}
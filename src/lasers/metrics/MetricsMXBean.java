@@ -0,0 +1,33 @@
+package lasers.metrics;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: MetricsMXBean.java
+ * @language: Java 14
+ *
+ * What the metrics show over JMX, under lasers:type=Metrics. Times are in nanoseconds.
+ */
+
+import java.util.Map;
+
+public interface MetricsMXBean {
+    /**
+     * @return every metric, one per line, the same as the periodic dump.
+     */
+    String getReport();
+
+    Map<String, Long> getCounts();
+
+    Map<String, Double> getMeans();
+
+    Map<String, Long> getMedians();
+
+    Map<String, Long> getP99s();
+
+    Map<String, Long> getMaxes();
+
+    /**
+     * Starts every metric over from nothing.
+     */
+    void reset();
+}
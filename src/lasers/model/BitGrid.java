@@ -0,0 +1,164 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: BitGrid.java
+ * @language: Java 14
+ *
+ * The rules shared by every safe that keeps its pillars and lasers as row and column bitsets (BitSafe,
+ * ConcurrentSafe and SafeSnapshot). Each of those lays its bitsets out its own way and only answers the few
+ * cell queries below; segment counts, beams and verify are worked out here once, on top of them.
+ */
+
+import lasers.model.Card.cType;
+
+import java.util.Arrays;
+
+import static lasers.model.Card.cType.*;
+
+abstract class BitGrid implements SafeView {
+    /**
+     * @return true if there is a pillar at (row, col).
+     */
+    abstract boolean pillarAt(int row, int col);
+
+    /**
+     * @return true if there is a laser at (row, col).
+     */
+    abstract boolean laserAt(int row, int col);
+
+    /**
+     * @return the column of the last pillar at or before col in the row, or -1 if there is none.
+     */
+    abstract int previousRowPillar(int row, int col);
+
+    /**
+     * @return the column of the first pillar at or after col in the row, or getCols() if there is none.
+     */
+    abstract int nextRowPillar(int row, int col);
+
+    /**
+     * @return the row of the last pillar at or above row in the column, or -1 if there is none.
+     */
+    abstract int previousColPillar(int row, int col);
+
+    /**
+     * @return the row of the first pillar at or below row in the column, or getRows() if there is none.
+     */
+    abstract int nextColPillar(int row, int col);
+
+    /**
+     * @return the lasers in the row between columns from (inclusive) and to (exclusive).
+     */
+    abstract int rowLasers(int row, int from, int to);
+
+    /**
+     * @return the lasers in the column between rows from (inclusive) and to (exclusive).
+     */
+    abstract int colLasers(int col, int from, int to);
+
+    public cType getCardType(int row, int col){
+        if(pillarAt(row, col)){
+            return PILLAR;
+        }else if(laserAt(row, col)){
+            return LASER;
+        }else if(lit(row, col)){
+            return BEAM;
+        }
+        return NONE;
+    }
+
+    /**
+     * Counts the lasers in a cell's row segment.
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return lasers between the nearest pillars (or walls) to the left and right.
+     */
+    final int rowSegmentLasers(int row, int col){
+        return rowLasers(row, previousRowPillar(row, col) + 1, nextRowPillar(row, col));
+    }
+
+    /**
+     * Counts the lasers in a cell's column segment.
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return lasers between the nearest pillars (or walls) above and below.
+     */
+    final int colSegmentLasers(int row, int col){
+        return colLasers(col, previousColPillar(row, col) + 1, nextColPillar(row, col));
+    }
+
+    /**
+     * @param row the row of a floor cell
+     * @param col the column of a floor cell
+     * @return true if a laser shines on the cell.
+     */
+    final boolean lit(int row, int col){
+        return rowSegmentLasers(row, col) > 0 || colSegmentLasers(row, col) > 0;
+    }
+
+    /**
+     * @param row the row of a pillar
+     * @param col the column of a pillar
+     * @return the lasers in the cardinal directions around the pillar.
+     */
+    final int adjacentLasers(int row, int col){
+        int count = 0;
+        // Order: Bottom, Top, Right, Left.
+        if(row + 1 < getRows() && laserAt(row + 1, col)){
+            count++;
+        }if(row - 1 >= 0 && laserAt(row - 1, col)){
+            count++;
+        }if(col + 1 < getCols() && laserAt(row, col + 1)){
+            count++;
+        }if(col - 1 >= 0 && laserAt(row, col - 1)){
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Checks the board with the same rules as Safe.verify. Each row is split into its segments once, so lit cells
+     * and lasers that see each other along the row come from one mask operation per segment; only cells left
+     * dark by their row need a column lookup.
+     * @return the row major index of the first invalid cell, or -1 if the safe is valid.
+     */
+    final int firstInvalid(){
+        int maxRow = getRows();
+        int maxCol = getCols();
+        long[] rowLit = new long[Bits.words(maxCol)];
+        long[] rowCrowded = new long[Bits.words(maxCol)];
+        for(int row = 0; row < maxRow; row++){
+            Arrays.fill(rowLit, 0);
+            Arrays.fill(rowCrowded, 0);
+            //mark the segments of this row that hold one laser as lit, and more than one as crowded.
+            int from = 0;
+            while(from < maxCol){
+                int to = nextRowPillar(row, from);
+                int lasers = rowLasers(row, from, to);
+                if(lasers > 0){
+                    Bits.setRange(rowLit, 0, from, to);
+                }if(lasers > 1){
+                    Bits.setRange(rowCrowded, 0, from, to);
+                }
+                from = to + 1;
+            }
+            for(int col = 0; col < maxCol; col++){
+                boolean ok;
+                if(pillarAt(row, col)){
+                    int need = getnLasers(row, col);
+                    // Any lasers >4 means it can have any amount of lasers.
+                    ok = need > 4 || adjacentLasers(row, col) == need;
+                }else if(laserAt(row, col)){
+                    ok = !Bits.get(rowCrowded, 0, col) && colSegmentLasers(row, col) == 1;
+                }else{
+                    ok = Bits.get(rowLit, 0, col) || colSegmentLasers(row, col) > 0;
+                }
+                if(!ok){
+                    return row * maxCol + col;
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,234 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: BitSafe.java
+ * @language: Java 14
+ *
+ * A safe stored as bitsets instead of Card objects. Pillars and lasers each get one bitset per row and one per
+ * column, and beams are never stored at all: a cell is lit when its row or column segment (the run between two
+ * pillars) holds a laser, which is a masked range test over the bitsets.
+ */
+
+import lasers.model.Card.cType;
+
+import java.io.IOException;
+
+import static lasers.model.Card.cType.*;
+
+public class BitSafe extends BitGrid implements SafeBoard {
+    private final int maxRow;       // maximum height of the safe interior.
+    private final int maxCol;       // maximum width of the safe interior.
+    private final int rowWords;     // words in each row bitset
+    private final int colWords;     // words in each column bitset
+    private final long[] pillarRows;    // pillar bitset of every row
+    private final long[] pillarCols;    // pillar bitset of every column
+    private final long[] laserRows;     // laser bitset of every row
+    private final long[] laserCols;     // laser bitset of every column
+    private final byte[] nLasers;       // lasers each pillar needs, row major
+    private SafeListener listener = SafeListener.QUIET; // told about the results of every command
+
+    /**
+     * Constructor that represents an empty safe of the given dimensions.
+     * @param row rows in the safe
+     * @param col columns in the safe
+     */
+    public BitSafe(int row, int col){
+        this.maxRow = row;
+        this.maxCol = col;
+        this.rowWords = Bits.words(col);
+        this.colWords = Bits.words(row);
+        this.pillarRows = new long[row * rowWords];
+        this.laserRows = new long[row * rowWords];
+        this.pillarCols = new long[col * colWords];
+        this.laserCols = new long[col * colWords];
+        this.nLasers = new byte[row * col];
+    }
+
+    /**
+     * Copies the pillars and lasers of another safe.
+     * @param other the safe being copied.
+     */
+    public BitSafe(SafeView other){
+        this(other.getRows(), other.getCols());
+        for(int row = 0; row < maxRow; row++){
+            for(int col = 0; col < maxCol; col++){
+                cType type = other.getCardType(row, col);
+                if(type == PILLAR){
+                    setPillar(row, col, other.getnLasers(row, col));
+                }else if(type == LASER){
+                    setLaser(row, col);
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor that represents a safe with its pillars already laid out.
+     * @param row rows in the safe
+     * @param col columns in the safe
+     * @param grid SafeReader.FLOOR or the amount of lasers each pillar needs, row major.
+     */
+    public BitSafe(int row, int col, byte[] grid){
+        this(row, col);
+        for(int r = 0; r < row; r++){
+            for(int c = 0; c < col; c++){
+                if(grid[r * col + c] != SafeReader.FLOOR){
+                    setPillar(r, c, grid[r * col + c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a safe from a SafeFile, reading its dimensions and grid in one pass.
+     * @param SafeFile the path of the SafeFile
+     * @return the loaded safe.
+     * @throws IOException for use in case the method fails to read from the file.
+     */
+    public static BitSafe load(String SafeFile) throws IOException {
+        SafeReader reader = SafeReader.open(SafeFile);
+        if(!reader.advance()){
+            throw new IOException("No safe found in " + SafeFile);
+        }
+        return new BitSafe(reader.getRows(), reader.getCols(), reader.getGrid());
+    }
+
+    /** Getters **/
+    public int getRows(){
+        return this.maxRow;
+    }
+
+    public int getCols(){
+        return this.maxCol;
+    }
+
+    public int getnLasers(int row, int col){
+        return this.nLasers[row * maxCol + col];
+    }
+
+    /**
+     * Places a laser at the inputted coordinates. Beams are implied by the laser so only LASER is stored.
+     * @param row Row being placed
+     * @param col Column being placed
+     * @param type the type of card being placed.
+     * @return true if a laser was placed.
+     */
+    public boolean add(int row, int col, cType type){
+        if(row < 0 || col < 0 || row >= maxRow || col >= maxCol){
+            listener.rejected(row, col, SafeListener.Problem.BAD_COORDINATES);
+            return false;
+        }else if(type != LASER){
+            return false;
+        }else if(Bits.get(pillarRows, row * rowWords, col)){
+            listener.rejected(row, col, SafeListener.Problem.PILLAR_THERE);
+            return false;
+        }else if(Bits.get(laserRows, row * rowWords, col)){
+            listener.rejected(row, col, SafeListener.Problem.LASER_THERE);
+            return false;
+        }
+        setLaser(row, col);
+        listener.laserAdded(row, col);
+        return true;
+    }
+
+    /**
+     * Add for Pillar
+     * @param row Row being added
+     * @param col Column being added
+     * @param type Type needs to be pillar
+     * @param numLasers Number of lasers for
+     * @return true if the pillar was placed.
+     */
+    public boolean add(int row, int col, cType type, int numLasers){
+        if(row < 0 || col < 0 || row >= maxRow || col >= maxCol){
+            listener.rejected(row, col, SafeListener.Problem.BAD_COORDINATES);
+            return false;
+        }else if(type == PILLAR && getCardType(row, col) == NONE){
+            setPillar(row, col, numLasers);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove a laser at a position (row, col)
+     * @param row Row being removed
+     * @param col Column being removed
+     * @return true if a laser was removed.
+     */
+    public boolean remove(int row, int col){
+        if(row < 0 || col < 0 || row >= maxRow || col >= maxCol){
+            listener.rejected(row, col, SafeListener.Problem.BAD_COORDINATES);
+            return false;
+        }else if(!Bits.get(laserRows, row * rowWords, col)){
+            listener.rejected(row, col, SafeListener.Problem.NO_LASER);
+            return false;
+        }
+        Bits.clear(laserRows, row * rowWords, col);
+        Bits.clear(laserCols, col * colWords, row);
+        listener.laserRemoved(row, col);
+        return true;
+    }
+
+    public void setListener(SafeListener listener){
+        this.listener = listener;
+    }
+
+    private void setPillar(int row, int col, int numLasers){
+        Bits.set(pillarRows, row * rowWords, col);
+        Bits.set(pillarCols, col * colWords, row);
+        this.nLasers[row * maxCol + col] = (byte)numLasers;
+    }
+
+    private void setLaser(int row, int col){
+        Bits.set(laserRows, row * rowWords, col);
+        Bits.set(laserCols, col * colWords, row);
+    }
+
+    boolean pillarAt(int row, int col){
+        return Bits.get(pillarRows, row * rowWords, col);
+    }
+
+    boolean laserAt(int row, int col){
+        return Bits.get(laserRows, row * rowWords, col);
+    }
+
+    int previousRowPillar(int row, int col){
+        return Bits.previous(pillarRows, row * rowWords, col);
+    }
+
+    int nextRowPillar(int row, int col){
+        return Bits.next(pillarRows, row * rowWords, col, maxCol);
+    }
+
+    int previousColPillar(int row, int col){
+        return Bits.previous(pillarCols, col * colWords, row);
+    }
+
+    int nextColPillar(int row, int col){
+        return Bits.next(pillarCols, col * colWords, row, maxRow);
+    }
+
+    int rowLasers(int row, int from, int to){
+        return Bits.count(laserRows, row * rowWords, from, to);
+    }
+
+    int colLasers(int col, int from, int to){
+        return Bits.count(laserCols, col * colWords, from, to);
+    }
+
+    /**
+     * verifies if the current safe layout is valid or not, with the same rules as Safe.verify.
+     * @return true if the safe is valid, false if the safe is not valid.
+     */
+    public boolean verify(){
+        int bad = firstInvalid();
+        if(bad >= 0){
+            listener.verifyFailed(bad / maxCol, bad % maxCol);
+            return false;
+        }
+        listener.verified();
+        return true;
+    }
+}
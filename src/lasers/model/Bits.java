@@ -0,0 +1,132 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: Bits.java
+ * @language: Java 14
+ *
+ * Range operations over bitsets packed into long arrays. A bitset starts at word 'base' of the array, so one
+ * array can hold a bitset for every row or every column of a safe.
+ */
+
+final class Bits {
+
+    private Bits(){
+    }
+
+    /**
+     * @param bits number of bits in each bitset
+     * @return the number of words each bitset needs.
+     */
+    static int words(int bits){
+        return (bits + 63) >>> 6;
+    }
+
+    static boolean get(long[] words, int base, int i){
+        return (words[base + (i >>> 6)] & (1L << i)) != 0;
+    }
+
+    static void set(long[] words, int base, int i){
+        words[base + (i >>> 6)] |= (1L << i);
+    }
+
+    static void clear(long[] words, int base, int i){
+        words[base + (i >>> 6)] &= ~(1L << i);
+    }
+
+    /**
+     * @param words the bitsets
+     * @param base first word of the bitset
+     * @param from first bit to look at
+     * @param limit bit to stop at (exclusive)
+     * @return the first set bit in [from, limit), or limit if there is none.
+     */
+    static int next(long[] words, int base, int from, int limit){
+        if(from >= limit){
+            return limit;
+        }
+        int w = from >>> 6;
+        long word = words[base + w] & (-1L << from);
+        int last = (limit - 1) >>> 6;
+        while(true){
+            if(word != 0){
+                int found = (w << 6) + Long.numberOfTrailingZeros(word);
+                return Math.min(found, limit);
+            }
+            if(++w > last){
+                return limit;
+            }
+            word = words[base + w];
+        }
+    }
+
+    /**
+     * @param words the bitsets
+     * @param base first word of the bitset
+     * @param from last bit to look at, scanning downwards
+     * @return the last set bit at or before from, or -1 if there is none.
+     */
+    static int previous(long[] words, int base, int from){
+        if(from < 0){
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = words[base + w] & (-1L >>> (63 - (from & 63)));
+        while(true){
+            if(word != 0){
+                return (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+            }
+            if(--w < 0){
+                return -1;
+            }
+            word = words[base + w];
+        }
+    }
+
+    /**
+     * @param words the bitsets
+     * @param base first word of the bitset
+     * @param from first bit counted
+     * @param to bit to stop at (exclusive)
+     * @return the number of set bits in [from, to).
+     */
+    static int count(long[] words, int base, int from, int to){
+        if(from >= to){
+            return 0;
+        }
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - ((to - 1) & 63));
+        if(first == last){
+            return Long.bitCount(words[base + first] & firstMask & lastMask);
+        }
+        int count = Long.bitCount(words[base + first] & firstMask);
+        for(int w = first + 1; w < last; w++){
+            count += Long.bitCount(words[base + w]);
+        }
+        return count + Long.bitCount(words[base + last] & lastMask);
+    }
+
+    /**
+     * Sets every bit in [from, to).
+     */
+    static void setRange(long[] words, int base, int from, int to){
+        if(from >= to){
+            return;
+        }
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - ((to - 1) & 63));
+        if(first == last){
+            words[base + first] |= firstMask & lastMask;
+            return;
+        }
+        words[base + first] |= firstMask;
+        for(int w = first + 1; w < last; w++){
+            words[base + w] = -1L;
+        }
+        words[base + last] |= lastMask;
+    }
+}
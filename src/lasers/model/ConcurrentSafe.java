@@ -0,0 +1,309 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: ConcurrentSafe.java
+ * @language: Java 14
+ *
+ * A safe many players can place and remove lasers on at once. Like the BitSafe it stores pillars and lasers as
+ * row and column bitsets and never stores beams, so a move only writes its own row's and column's bits. Each
+ * row and column maps to one of a fixed set of striped locks, and a move holds just the stripe of its row and
+ * the stripe of its column, so moves on different rows and columns run in parallel. Every writer holds a row
+ * stripe, so taking all of the row stripes stops the board for a consistent verify or print.
+ */
+
+import lasers.model.Card.cType;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static lasers.model.Card.cType.*;
+
+public class ConcurrentSafe extends BitGrid implements SafeBoard {
+    private static final int STRIPES = 64;      // locks per dimension, a power of two
+
+    private final int maxRow;       // maximum height of the safe interior.
+    private final int maxCol;       // maximum width of the safe interior.
+    private final int rowWords;     // words in each row bitset
+    private final int colWords;     // words in each column bitset
+    private final long[] pillarRows;    // pillar bitset of every row, fixed once built
+    private final long[] pillarCols;    // pillar bitset of every column, fixed once built
+    private final long[] laserRows;     // laser bitset of every row, guarded by the row's stripe
+    private final long[] laserCols;     // laser bitset of every column, guarded by the column's stripe
+    private final byte[] nLasers;       // lasers each pillar needs, row major
+    private final ReentrantLock[] rowLocks = stripes();     // always taken before a column stripe
+    private final ReentrantLock[] colLocks = stripes();
+    private volatile SafeListener listener = SafeListener.QUIET; // told about the results of every command
+
+    /**
+     * Constructor that represents a safe with its pillars already laid out.
+     * @param row rows in the safe
+     * @param col columns in the safe
+     * @param grid SafeReader.FLOOR or the amount of lasers each pillar needs, row major.
+     */
+    public ConcurrentSafe(int row, int col, byte[] grid){
+        this.maxRow = row;
+        this.maxCol = col;
+        this.rowWords = Bits.words(col);
+        this.colWords = Bits.words(row);
+        this.pillarRows = new long[row * rowWords];
+        this.laserRows = new long[row * rowWords];
+        this.pillarCols = new long[col * colWords];
+        this.laserCols = new long[col * colWords];
+        this.nLasers = new byte[row * col];
+        for(int r = 0; r < row; r++){
+            for(int c = 0; c < col; c++){
+                if(grid[r * col + c] != SafeReader.FLOOR){
+                    Bits.set(pillarRows, r * rowWords, c);
+                    Bits.set(pillarCols, c * colWords, r);
+                    this.nLasers[r * col + c] = grid[r * col + c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the pillars and lasers of another safe.
+     * @param other the safe being copied.
+     */
+    public ConcurrentSafe(SafeView other){
+        this(other.getRows(), other.getCols(), grid(other));
+        for(int row = 0; row < maxRow; row++){
+            for(int col = 0; col < maxCol; col++){
+                if(other.getCardType(row, col) == LASER){
+                    setLaser(row, col);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a safe from a SafeFile, reading its dimensions and grid in one pass.
+     * @param SafeFile the path of the SafeFile
+     * @return the loaded safe.
+     * @throws IOException for use in case the method fails to read from the file.
+     */
+    public static ConcurrentSafe load(String SafeFile) throws IOException {
+        SafeReader reader = SafeReader.open(SafeFile);
+        if(!reader.advance()){
+            throw new IOException("No safe found in " + SafeFile);
+        }
+        return new ConcurrentSafe(reader.getRows(), reader.getCols(), reader.getGrid());
+    }
+
+    private static byte[] grid(SafeView other){
+        byte[] grid = new byte[other.getRows() * other.getCols()];
+        for(int row = 0; row < other.getRows(); row++){
+            for(int col = 0; col < other.getCols(); col++){
+                boolean pillar = other.getCardType(row, col) == PILLAR;
+                grid[row * other.getCols() + col] = pillar ? (byte)other.getnLasers(row, col) : SafeReader.FLOOR;
+            }
+        }
+        return grid;
+    }
+
+    private static ReentrantLock[] stripes(){
+        ReentrantLock[] locks = new ReentrantLock[STRIPES];
+        for(int i = 0; i < STRIPES; i++){
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    /** Getters **/
+    public int getRows(){
+        return this.maxRow;
+    }
+
+    public int getCols(){
+        return this.maxCol;
+    }
+
+    public cType getCardType(int row, int col){
+        if(Bits.get(pillarRows, row * rowWords, col)){
+            return PILLAR;
+        }
+        lock(row, col);
+        try{
+            return super.getCardType(row, col);
+        }finally{
+            unlock(row, col);
+        }
+    }
+
+    public int getnLasers(int row, int col){
+        return this.nLasers[row * maxCol + col];
+    }
+
+    /**
+     * Places a laser at the inputted coordinates, holding only the stripes of its row and column.
+     * @param row Row being placed
+     * @param col Column being placed
+     * @param type the type of card being placed.
+     * @return true if a laser was placed.
+     */
+    public boolean add(int row, int col, cType type){
+        if(row < 0 || col < 0 || row >= maxRow || col >= maxCol){
+            listener.rejected(row, col, SafeListener.Problem.BAD_COORDINATES);
+            return false;
+        }else if(type != LASER){
+            return false;
+        }else if(Bits.get(pillarRows, row * rowWords, col)){
+            listener.rejected(row, col, SafeListener.Problem.PILLAR_THERE);
+            return false;
+        }
+        boolean placed;
+        lock(row, col);
+        try{
+            placed = !Bits.get(laserRows, row * rowWords, col);
+            if(placed){
+                setLaser(row, col);
+            }
+        }finally{
+            unlock(row, col);
+        }
+        //the listener is told outside the locks so a slow listener never holds up other players.
+        if(placed){
+            listener.laserAdded(row, col);
+        }else{
+            listener.rejected(row, col, SafeListener.Problem.LASER_THERE);
+        }
+        return placed;
+    }
+
+    /**
+     * Remove a laser at a position (row, col), holding only the stripes of its row and column.
+     * @param row Row being removed
+     * @param col Column being removed
+     * @return true if a laser was removed.
+     */
+    public boolean remove(int row, int col){
+        if(row < 0 || col < 0 || row >= maxRow || col >= maxCol){
+            listener.rejected(row, col, SafeListener.Problem.BAD_COORDINATES);
+            return false;
+        }
+        boolean removed;
+        lock(row, col);
+        try{
+            removed = Bits.get(laserRows, row * rowWords, col);
+            if(removed){
+                Bits.clear(laserRows, row * rowWords, col);
+                Bits.clear(laserCols, col * colWords, row);
+            }
+        }finally{
+            unlock(row, col);
+        }
+        if(removed){
+            listener.laserRemoved(row, col);
+        }else{
+            listener.rejected(row, col, SafeListener.Problem.NO_LASER);
+        }
+        return removed;
+    }
+
+    public void setListener(SafeListener listener){
+        this.listener = listener;
+    }
+
+    private void setLaser(int row, int col){
+        Bits.set(laserRows, row * rowWords, col);
+        Bits.set(laserCols, col * colWords, row);
+    }
+
+    /**
+     * Takes the stripes of a cell's row and column, row first so two moves can never wait on each other.
+     */
+    private void lock(int row, int col){
+        rowLocks[row & (STRIPES - 1)].lock();
+        colLocks[col & (STRIPES - 1)].lock();
+    }
+
+    private void unlock(int row, int col){
+        colLocks[col & (STRIPES - 1)].unlock();
+        rowLocks[row & (STRIPES - 1)].unlock();
+    }
+
+    /**
+     * Takes every row stripe in order, which shuts out every move until unlockAll.
+     */
+    private void lockAll(){
+        for(ReentrantLock lock : rowLocks){
+            lock.lock();
+        }
+    }
+
+    private void unlockAll(){
+        for(int i = STRIPES - 1; i >= 0; i--){
+            rowLocks[i].unlock();
+        }
+    }
+
+    //the cell queries read laser bitsets unlocked, so callers hold the stripes of the cells they look at.
+    boolean pillarAt(int row, int col){
+        return Bits.get(pillarRows, row * rowWords, col);
+    }
+
+    boolean laserAt(int row, int col){
+        return Bits.get(laserRows, row * rowWords, col);
+    }
+
+    int previousRowPillar(int row, int col){
+        return Bits.previous(pillarRows, row * rowWords, col);
+    }
+
+    int nextRowPillar(int row, int col){
+        return Bits.next(pillarRows, row * rowWords, col, maxCol);
+    }
+
+    int previousColPillar(int row, int col){
+        return Bits.previous(pillarCols, col * colWords, row);
+    }
+
+    int nextColPillar(int row, int col){
+        return Bits.next(pillarCols, col * colWords, row, maxRow);
+    }
+
+    int rowLasers(int row, int from, int to){
+        return Bits.count(laserRows, row * rowWords, from, to);
+    }
+
+    int colLasers(int col, int from, int to){
+        return Bits.count(laserCols, col * colWords, from, to);
+    }
+
+    /**
+     * Prints the safe as it stood at one moment, with every move held off while it is printed.
+     * @param out where the safe is printed.
+     */
+    @Override
+    public void printSafe(PrintStream out){
+        lockAll();
+        try{
+            SafeBoard.super.printSafe(out);
+        }finally{
+            unlockAll();
+        }
+    }
+
+    /**
+     * verifies if the current safe layout is valid or not, with the same rules as Safe.verify. Every move is
+     * held off while the board is checked, so the answer holds for one consistent snapshot of it.
+     * @return true if the safe is valid, false if the safe is not valid.
+     */
+    public boolean verify(){
+        int bad;
+        lockAll();
+        try{
+            bad = firstInvalid();
+        }finally{
+            unlockAll();
+        }
+        if(bad >= 0){
+            listener.verifyFailed(bad / maxCol, bad % maxCol);
+            return false;
+        }
+        listener.verified();
+        return true;
+    }
+}
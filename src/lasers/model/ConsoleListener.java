@@ -0,0 +1,54 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: ConsoleListener.java
+ * @language: Java 14
+ *
+ * Prints the results of the commands run on a safe to the console, the way the PTUI always has.
+ */
+
+import java.io.PrintStream;
+
+public class ConsoleListener implements SafeListener {
+    private final PrintStream out;  // Where the results are printed
+
+    /**
+     * Prints to the console.
+     */
+    public ConsoleListener(){
+        this(System.out);
+    }
+
+    /**
+     * @param out where the results are printed.
+     */
+    public ConsoleListener(PrintStream out){
+        this.out = out;
+    }
+
+    @Override
+    public void laserAdded(int row, int col){
+        out.println("Laser added @: (" + row +", " + col + ")");
+    }
+
+    @Override
+    public void laserRemoved(int row, int col){
+        out.println("Laser removed @ (" + row + ", "+ col+ ")");
+    }
+
+    @Override
+    public void rejected(int row, int col, Problem problem){
+        out.println(problem.getMessage());
+    }
+
+    @Override
+    public void verified(){
+        out.println("The safe is fully verified");
+    }
+
+    @Override
+    public void verifyFailed(int row, int col){
+        out.println("Error Verifying at " + row + " " + col);
+    }
+}
@@ -8,20 +8,41 @@ package lasers.model;
  * Creates a safe object and manipulates the placement of cards on it
  */
 
+import lasers.metrics.Histogram;
+import lasers.metrics.Metrics;
 import lasers.model.Card.cType;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 import static lasers.model.Card.cType.*;
 
-public class Safe {
+public class Safe implements SafeBoard {
     int maxCol; //maximum height of the safe interior.
     int maxRow; //maximum width of the safe interior.
     public Card[][] SafeLayout = new Card[this.maxRow][this.maxCol]; //2d Card array that functions as the safe's 'board'
+    private int[][] beams = new int[this.maxRow][this.maxCol];  //number of lasers shining on each cell
+    private BitSet violating = new BitSet();   //cells (row * maxCol + col) that currently fail verification
+    private int nViolations;                   //number of set bits in violating
+    private SafeListener listener = SafeListener.QUIET;    //told about the results of every command
+    private int[] journal = new int[16];    //every add and remove, as (row * maxCol + col) << 1 | ADDED/REMOVED
+    private int journalSize;                //moves currently applied, the next undo is journal[journalSize - 1]
+    private int journalTop;                 //moves recorded, the ones past journalSize can be redone
+    private long hash;                      //xor of the Zobrist keys of every laser on the safe
+    private SafeIndex index;                //segment ends and adjacent pillars of every cell
+
+    private static final int REMOVED = 0;   //journal op for a removed laser
+    private static final int ADDED = 1;     //journal op for a placed laser
+
+    //timings and beam lengths, only recorded when Metrics.ENABLED.
+    private static final Histogram ADD_TIME = Metrics.histogram("safe.add");
+    private static final Histogram REMOVE_TIME = Metrics.histogram("safe.remove");
+    private static final Histogram VERIFY_TIME = Metrics.histogram("safe.verify");
+    private static final Histogram MAKE_TIME = Metrics.histogram("safe.makeSafe");
+    private static final Histogram BEAM_CELLS = Metrics.histogram("safe.beamCells");
+    private static final Histogram SWEEP_TIME = Metrics.histogram("safe.sweep");
 
     /**
      * Constructor that represents the safe and the dimensions of the safe.
@@ -32,10 +53,37 @@ public class Safe {
         makeSafe();
     }
 
+    /**
+     * Constructor that represents a safe with its pillars already laid out.
+     * @param row rows in the safe
+     * @param col columns in the safe
+     * @param grid SafeReader.FLOOR or the amount of lasers each pillar needs, row major.
+     */
+    public Safe(int row, int col, byte[] grid){
+        this.maxRow = row;
+        this.maxCol = col;
+        makeSafe(grid);
+    }
+
+    /**
+     * Creates a safe from a SafeFile, reading its dimensions and grid in one pass.
+     * @param SafeFile the path of the SafeFile
+     * @return the loaded safe.
+     * @throws IOException for use in case the method fails to read from the file.
+     */
+    public static Safe load(String SafeFile) throws IOException {
+        Safe safe = SafeReader.open(SafeFile).next();
+        if(safe == null){
+            throw new IOException("No safe found in " + SafeFile);
+        }
+        return safe;
+    }
+
     /**
      * Makes a blank SafeLayout based on teh safe's internal dimensions w/ no lasers or pillars.
      */
     public void makeSafe(){
+        long start = Metrics.start();
         Card[][] tempSafe = new Card[this.maxRow][this.maxCol];
         for(int row = 0; row < this.maxRow; row++){
             for(int col = 0; col < this.maxCol; col++){
@@ -44,6 +92,13 @@ public class Safe {
             }
         }
         this.SafeLayout = tempSafe;
+        this.beams = new int[this.maxRow][this.maxCol];
+        this.journalSize = 0;
+        this.journalTop = 0;
+        this.hash = 0;
+        this.index = new SafeIndex(this.SafeLayout, this.maxRow, this.maxCol);
+        recount();
+        Metrics.since(MAKE_TIME, start);
     }
     /**
      * takes in a .txt SafeFile and sets the Safe's layout to match the given file
@@ -51,148 +106,127 @@ public class Safe {
      * @throws IOException for use in case the method fails to read from the file.
      */
     public void makeSafe(String SafeFile) throws IOException {
-        //opens the inputted file into a new BufferedReader and reads the first line to 'skip' over it,
-        //since the coordinates are already defined, and creates a temporary Card[][] SafeLayout.
-        File file = new File(SafeFile);
-        BufferedReader input = new BufferedReader(new FileReader(file));
-        input.readLine();
-        Card[][] tempSafe = new Card[this.maxRow][this.maxCol];
+        //reads the first safe in the file, taking on its dimensions.
+        SafeReader reader = SafeReader.open(SafeFile);
+        if(!reader.advance()){
+            throw new IOException("No safe found in " + SafeFile);
+        }
+        this.maxRow = reader.getRows();
+        this.maxCol = reader.getCols();
+        makeSafe(reader.getGrid());
+    }
 
-        //reads the file line by line, splitting each line by whitespaces into a String[].
+    /**
+     * Sets the Safe's layout to the given grid of pillars, with no lasers placed.
+     * @param grid SafeReader.FLOOR or the amount of lasers each pillar needs, row major.
+     */
+    public void makeSafe(byte[] grid){
+        long start = Metrics.start();
+        Card[][] tempSafe = new Card[this.maxRow][this.maxCol];
         for(int row = 0; row < this.maxRow; row++){
-            String[] currentLine = input.readLine().split(" ");
-            //for each string element in the line/ String[],
-            //analyze that element.
             for(int col = 0; col < this.maxCol; col++){
-                String currentCard = currentLine[col];
-                Card newCard;
-                switch (currentCard){
-                    // check if the element is a floor Card("."), an arbitrary pillar("X")
-                    // or a pillar with a required amount of lasers.
-                    // place it into [row][col] in the temporary layout.
-                    case("."):
-                        //create and add a floor card/NONE
-                        newCard = new Card(row, col);
-                        newCard.setCardType(NONE);
-                        tempSafe[row][col] = newCard;
-                        break;
-                    case("X"):
-                        //create and add a pillar that can support any amount of lasers.
-                        newCard = new Pillar(row, col,10);
-                        newCard.setCardType(PILLAR);
-                        tempSafe[row][col] = newCard;
-                        break;
-                    default:
-                        //create and add a pillar that requires the specified amount of lasers.
-                        int numLasers = Integer.parseInt(currentLine[col]);
-                        newCard = new Pillar(row, col,numLasers);
-                        newCard.setCardType(PILLAR);
-                        tempSafe[row][col] = newCard;
-
+                byte cell = grid[row * this.maxCol + col];
+                if(cell == SafeReader.FLOOR){
+                    //create and add a floor card/NONE
+                    tempSafe[row][col] = new Card(row, col);
+                }else{
+                    //create and add a pillar that requires the specified amount of lasers, 'X' being 10.
+                    Card newCard = new Pillar(row, col, cell);
+                    newCard.setCardType(PILLAR);
+                    tempSafe[row][col] = newCard;
                 }
             }
         }
         //make the SafeLayout the temporary layout.
         this.SafeLayout = tempSafe;
+        this.beams = new int[this.maxRow][this.maxCol];
+        this.journalSize = 0;
+        this.journalTop = 0;
+        this.hash = 0;
+        this.index = new SafeIndex(this.SafeLayout, this.maxRow, this.maxCol);
+        recount();
+        Metrics.since(MAKE_TIME, start);
     }
 
+    /** Getters **/
+    public int getRows(){
+        return this.maxRow;
+    }
+
+    public int getCols(){
+        return this.maxCol;
+    }
+
+    public cType getCardType(int row, int col){
+        return this.SafeLayout[row][col].getCardType();
+    }
+
+    public int getnLasers(int row, int col){
+        return ((Pillar)this.SafeLayout[row][col]).getnLasers();
+    }
 
     /**
-     * a method that prints out the safe in a 2d grid format, with rows and columns numbered.
-     * **/
-    public void printSafe(){
-        //prints the numbering for the columns.
-        System.out.print("   ");
-        for(int i = 0; i < this.maxCol ; i++ ){
-            System.out.print(i + " ");
-        }
-        System.out.println();
-        System.out.print("   ");
-        for(int i = 0; i < this.maxCol ; i++ ){
-            System.out.print("- ");
-        }
-        System.out.println();
+     * @return a 64 bit Zobrist hash of the lasers on the safe, equal for safes with the same lasers.
+     */
+    public long getHash(){
+        return this.hash;
+    }
 
-        for(int row = 0; row < this.maxRow; row++){
-            //for each row print the row's number.
-            System.out.print(row + "| ");
-            for(int col = 0; col < this.maxCol; col++){
-                //for each card from left to right, top to bottom.
-                cType type = this.SafeLayout[row][col].getCardType();
-                switch(type){
-                    case NONE:
-                        //if the tile is a floor, print a ". " to represent empty floor space.
-                        System.out.print(". ");
-                        break;
-                    case PILLAR:
-                        //if the tile is a pillar, either print "X " if the tile is arbitrary.
-                        Pillar piller = (Pillar)this.SafeLayout[row][col];
-                        if(piller.getnLasers() > 4){
-                            System.out.print("X ");
-                        }else {
-                            //print the required amount of lasers needed.
-                            System.out.print(piller.getnLasers() + " ");
-                        }
-                        break;
-                    case LASER:
-                        //print "L " if the Card is a laser.
-                        System.out.print("L ");
-                        break;
-                    case BEAM:
-                        //if the Card is a beam, print "* ".
-                        System.out.print("* ");
-                        break;
-                }
-            }
-            //prints a new line for the next row of cards to be printed on.
-            System.out.println();
-        }
-        System.out.println();
+    /**
+     * Sets the listener told about the results of add, remove and verify.
+     * @param listener the listener, SafeListener.QUIET to ignore them.
+     */
+    public void setListener(SafeListener listener){
+        this.listener = listener;
     }
 
     /**
      * Places a specified card at the inputted coordinates.
      * @param row Row being placed
      * @param col Column being placed
+     * @return true if the card was placed.
      */
-    public void add(int row, int col, cType type){
-        // If the row and column are out of bounds.
-        if(row >= maxRow || col >= maxCol){
-            System.out.println("Incorrect Coordinates...");
-        }else{
-            //Check to see what the type is.
-            switch(type){
-                case LASER:
-                    // If we are trying to place it on a pillar.
-                    if(this.SafeLayout[row][col].getCardType() == cType.PILLAR) {
-                        System.out.println("Pillar at coordinates...");
-                    }else if(this.SafeLayout[row][col].getCardType() == cType.LASER) {
-                        System.out.println("Laser at coordinates...");
-                    }else{
-                        //create and add a laser.
-                        Card laser = new Laser(row, col);
-                        laser.setCardType(type);
-                        this.SafeLayout[row][col] = laser;
-
-                        //Set the beams for that laser.
-                        setBeams(row, col);
+    public boolean add(int row, int col, cType type){
+        long start = Metrics.start();
+        boolean placed = place(row, col, type);
+        Metrics.since(ADD_TIME, start);
+        return placed;
+    }
 
-                        //Add this laser as being powered by the pillar.
-                        testForPillars(row, col);
-                        System.out.println("Laser added @: (" + row +", " + col + ")");
-                    }
-                    break;
-                case BEAM:
-                    //creates a new beam object
-                    Card beam = new Card(row, col, BEAM);
-                    // if we are trying to place a beam on a laser, add it to the overlap.
-                    if(this.SafeLayout[row][col].isType(LASER)){
-                        this.SafeLayout[row][col].addOverlap(beam);
-                        //if there is nothing on the empty floor space, place the beam.
-                    }else if (this.SafeLayout[row][col].getCardType() == NONE){
-                        this.SafeLayout[row][col] = beam;
-                    }
-            }
+    /**
+     * The body of add, kept apart so add can be timed.
+     */
+    private boolean place(int row, int col, cType type){
+        // If the row and column are out of bounds.
+        if(row < 0 || col < 0 || row >= maxRow || col >= maxCol){
+            listener.rejected(row, col, SafeListener.Problem.BAD_COORDINATES);
+            return false;
+        }
+        //Check to see what the type is.
+        switch(type){
+            case LASER:
+                // If we are trying to place it on a pillar.
+                if(this.SafeLayout[row][col].getCardType() == cType.PILLAR) {
+                    listener.rejected(row, col, SafeListener.Problem.PILLAR_THERE);
+                    return false;
+                }else if(this.SafeLayout[row][col].getCardType() == cType.LASER) {
+                    listener.rejected(row, col, SafeListener.Problem.LASER_THERE);
+                    return false;
+                }
+                placeLaser(row, col);
+                record(row * this.maxCol + col, ADDED);
+                listener.laserAdded(row, col);
+                return true;
+            case BEAM:
+                // a pillar can not hold a beam, so it is left as it is.
+                if(this.SafeLayout[row][col].getCardType() == cType.PILLAR) {
+                    return false;
+                }
+                // lights up the cell as if one more laser shone on it.
+                light(row, col, null);
+                return true;
+            default:
+                return false;
         }
     }
 
@@ -203,69 +237,323 @@ public class Safe {
      * @param col Column being added
      * @param type Type needs to be pillar
      * @param numLasers Number of lasers for
+     * @return true if the pillar was placed.
      */
-    public void add(int row, int col, cType type, int numLasers){
+    public boolean add(int row, int col, cType type, int numLasers){
         // if we are out of bounds.
-        if(row >= maxRow || col >= maxCol){
-            System.out.println("Incorrect Coordinates...");
+        if(row < 0 || col < 0 || row >= maxRow || col >= maxCol){
+            listener.rejected(row, col, SafeListener.Problem.BAD_COORDINATES);
+            return false;
         }else if((type == PILLAR) && (this.SafeLayout[row][col].getCardType() == cType.NONE)) {
             // creates a new piller and places it at the cords.
             Card pillar = new Pillar(row, col, numLasers);
             pillar.setCardType(type);
             this.SafeLayout[row][col] = pillar;
+            this.beams[row][col] = 0;
+            this.index = new SafeIndex(this.SafeLayout, this.maxRow, this.maxCol);
+            refresh(row, col);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Places a whole set of lasers at once, such as a saved solution, keeping the lasers already on the safe.
+     * Instead of casting each laser's beams on its own, the beams, the lasers that see each other and the pillar
+     * counts of the whole safe are worked out in one row sweep and one column sweep. Every new laser goes into
+     * the journal, in row major order, and is told to the listener as if it had been added by itself, so each
+     * one can be undone. Beams placed by hand with add(BEAM) are dropped, since every beam is worked out again
+     * from the lasers.
+     * @param lasers row major, true for every cell that should hold a laser
+     * @return the number of lasers placed; cells that hold a pillar are rejected, and cells that hold a laser
+     * already are left as they are.
+     */
+    public int addAll(boolean[] lasers){
+        checkCells(lasers);
+        int before = this.journalSize;
+        for(int cell = 0; cell < lasers.length; cell++){
+            if(lasers[cell] && isFloor(cell)){
+                record(cell, ADDED);
+            }
+        }
+        int rejected = sweep(lasers, true);
+        for(int i = before; i < this.journalSize; i++){
+            int cell = this.journal[i] >>> 1;
+            listener.laserAdded(cell / this.maxCol, cell % this.maxCol);
+        }
+        tellRejected(lasers, rejected);
+        return this.journalSize - before;
+    }
+
+    /**
+     * Places a run of lasers in one row sweep and one column sweep like addAll(boolean[]), but journals them and
+     * tells the listener in the order they are given, the same as calling add on each in turn. Undoing after a
+     * run therefore takes away its last laser first, as it would after single adds. Like addAll(boolean[]) it
+     * drops the beams placed by hand with add(BEAM).
+     * @param cells row major cells, in the order they were added; a cell may repeat
+     * @return the number of lasers placed; cells that hold a pillar or a laser already, or that come up a
+     * second time, are rejected.
+     */
+    public int addAll(int[] cells){
+        int size = this.maxRow * this.maxCol;
+        boolean[] lasers = new boolean[size];
+        int before = this.journalSize;
+        for(int cell : cells){
+            if(cell < 0 || cell >= size){
+                throw new IllegalArgumentException("Cell " + cell + " is not on a " + this.maxRow + "x" + this.maxCol + " safe");
+            }
+            if(!lasers[cell] && isFloor(cell)){
+                lasers[cell] = true;
+                record(cell, ADDED);
+            }
+        }
+        sweep(lasers, true);
+        //the journal holds the placed cells in the order they came, so walk it alongside to tell them apart.
+        int next = before;
+        for(int cell : cells){
+            int row = cell / this.maxCol;
+            int col = cell % this.maxCol;
+            if(next < this.journalSize && this.journal[next] >>> 1 == cell){
+                next++;
+                listener.laserAdded(row, col);
+            }else if(this.SafeLayout[row][col].isType(PILLAR)){
+                listener.rejected(row, col, SafeListener.Problem.PILLAR_THERE);
+            }else{
+                listener.rejected(row, col, SafeListener.Problem.LASER_THERE);
+            }
+        }
+        return this.journalSize - before;
+    }
+
+    /**
+     * Replaces every laser on the safe with the given set, in one row sweep and one column sweep like addAll.
+     * Like makeSafe this starts a new history, so the moves made before can no longer be undone. Beams placed by
+     * hand with add(BEAM) are dropped, since every beam is worked out again from the lasers.
+     * @param lasers row major, true for every cell that should hold a laser
+     * @return the number of lasers on the safe afterwards; cells that hold a pillar are rejected.
+     */
+    public int resetTo(boolean[] lasers){
+        checkCells(lasers);
+        this.journalSize = 0;
+        this.journalTop = 0;
+        int rejected = sweep(lasers, false);
+        tellRejected(lasers, rejected);
+        int count = 0;
+        for(boolean laser : lasers){
+            if(laser){
+                count++;
+            }
         }
+        return count - rejected;
+    }
+
+    /**
+     * @return true if a row major cell holds neither a pillar nor a laser.
+     */
+    private boolean isFloor(int cell){
+        Card card = this.SafeLayout[cell / this.maxCol][cell % this.maxCol];
+        return !card.isType(PILLAR) && !card.isType(LASER);
+    }
+
+    private void checkCells(boolean[] lasers){
+        if(lasers.length != this.maxRow * this.maxCol){
+            throw new IllegalArgumentException("Expected " + this.maxRow * this.maxCol + " cells, got " + lasers.length);
+        }
+    }
+
+    /**
+     * Tells the listener about the cells of a bulk placement that hold a pillar, once the safe is settled.
+     * @param lasers the lasers that were asked for
+     * @param rejected how many of them were turned down, so nothing is scanned when none were.
+     */
+    private void tellRejected(boolean[] lasers, int rejected){
+        for(int cell = 0; rejected > 0 && cell < lasers.length; cell++){
+            int row = cell / this.maxCol;
+            int col = cell % this.maxCol;
+            if(lasers[cell] && !this.SafeLayout[row][col].isType(LASER)){
+                rejected--;
+                listener.rejected(row, col, SafeListener.Problem.PILLAR_THERE);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the lasers, beams, overlaps, hash and violation counters of the whole safe from a set of lasers.
+     * The row sweep settles which cells hold lasers, counts the lasers of every row and column segment, links the
+     * lasers that share a row segment and gives each pillar its neighbouring lasers. The column sweep then knows
+     * every segment's count, so it sets each cell's beams and type, links the lasers that share a column segment
+     * and refreshes the cell's violation bit.
+     * @param lasers row major, true for every cell that should hold a laser
+     * @param keep true to keep the lasers already on the safe; the caller journals the new ones
+     * @return the number of lasers asked for on pillars, which are left out.
+     */
+    private int sweep(boolean[] lasers, boolean keep){
+        long start = Metrics.start();
+        int cols = this.maxCol;
+        int[] rowCount = new int[lasers.length];   //lasers in each row segment, by its first cell
+        int[] colCount = new int[lasers.length];   //lasers in each column segment, by its first cell
+        List<Card> segment = new ArrayList<>();    //lasers met so far in the current segment
+        int rejected = 0;
+        this.hash = 0;
+        this.violating = new BitSet(lasers.length);
+        this.nViolations = 0;
+
+        //row sweep.
+        for(int row = 0; row < this.maxRow; row++){
+            segment.clear();
+            for(int col = 0; col < cols; col++){
+                int cell = row * cols + col;
+                Card card = this.SafeLayout[row][col];
+                card.overlap.clear();
+                this.beams[row][col] = 0;
+                if(card.isType(PILLAR)){
+                    rejected += lasers[cell] ? 1 : 0;
+                    // Order: Bottom, Top, Right, Left; the row above is already settled.
+                    if(row + 1 < this.maxRow && willHoldLaser(lasers, keep, row + 1, col)){
+                        card.addOverlap(this.SafeLayout[row + 1][col]);
+                    }if(row - 1 >= 0 && this.SafeLayout[row - 1][col].isType(LASER)){
+                        card.addOverlap(this.SafeLayout[row - 1][col]);
+                    }if(col + 1 < cols && willHoldLaser(lasers, keep, row, col + 1)){
+                        card.addOverlap(this.SafeLayout[row][col + 1]);
+                    }if(col - 1 >= 0 && this.SafeLayout[row][col - 1].isType(LASER)){
+                        card.addOverlap(this.SafeLayout[row][col - 1]);
+                    }
+                    segment.clear();
+                    continue;
+                }
+                boolean laser = lasers[cell] || (keep && card.isType(LASER));
+                card.setCardType(laser ? LASER : NONE);
+                if(laser){
+                    this.hash ^= Zobrist.key(cell);
+                    rowCount[row * cols + this.index.rowFirst[cell]]++;
+                    colCount[this.index.colFirst[cell] * cols + col]++;
+                    for(Card other : segment){
+                        other.addOverlap(card);
+                        card.addOverlap(other);
+                    }
+                    segment.add(card);
+                }
+            }
+        }
+
+        //column sweep.
+        for(int col = 0; col < cols; col++){
+            segment.clear();
+            for(int row = 0; row < this.maxRow; row++){
+                int cell = row * cols + col;
+                Card card = this.SafeLayout[row][col];
+                if(card.isType(PILLAR)){
+                    segment.clear();
+                }else{
+                    int shining = rowCount[row * cols + this.index.rowFirst[cell]]
+                            + colCount[this.index.colFirst[cell] * cols + col];
+                    if(card.isType(LASER)){
+                        // A laser does not shine on itself, along its row or its column.
+                        this.beams[row][col] = shining - 2;
+                        for(Card other : segment){
+                            other.addOverlap(card);
+                            card.addOverlap(other);
+                        }
+                        segment.add(card);
+                    }else{
+                        this.beams[row][col] = shining;
+                        card.setCardType(shining > 0 ? BEAM : NONE);
+                    }
+                }
+                refresh(row, col);
+            }
+        }
+        Metrics.since(SWEEP_TIME, start);
+        return rejected;
+    }
+
+    /**
+     * @return true if a cell the row sweep has not reached yet will hold a laser once it has.
+     */
+    private boolean willHoldLaser(boolean[] lasers, boolean keep, int row, int col){
+        Card card = this.SafeLayout[row][col];
+        return !card.isType(PILLAR) && (lasers[row * this.maxCol + col] || (keep && card.isType(LASER)));
     }
 
     /***
      * tests for pillars from the inputted (row, col) in cardinal directions.
-     * Scans out in the cardinal directions looking for pillars.
-     * If it finds one it adds itself to that pillars Overlap array.
+     * Looks up the pillars next to the laser in the index.
+     * For each one it adds itself to that pillars Overlap array.
      * @param row the row for the test to originate at, (non-inclusive)
      * @param col the column for the test to originate at, (non-inclusive)
      */
     private void testForPillars(int row, int col){
         // Order: Bottom, Top, Right, Left.
-        if((row + 1 < maxRow) && (this.SafeLayout[row + 1][col].isType(PILLAR))){
-            this.SafeLayout[row + 1][col].addOverlap(this.SafeLayout[row][col]);
-        }if((row - 1 >= 0) && (this.SafeLayout[row - 1][col].isType(PILLAR))){
-            this.SafeLayout[row - 1][col].addOverlap(this.SafeLayout[row][col]);
-        }if((col + 1 < maxCol) && (this.SafeLayout[row][col + 1].isType(PILLAR))){
-            this.SafeLayout[row][col + 1].addOverlap(this.SafeLayout[row][col]);
-        }if((col - 1 >= 0) && (this.SafeLayout[row][col - 1].isType(PILLAR))){
-            this.SafeLayout[row][col - 1].addOverlap(this.SafeLayout[row][col]);
+        int cell = row * this.maxCol + col;
+        for(int i = this.index.pillarStart[cell]; i < this.index.pillarStart[cell + 1]; i++){
+            int pillar = this.index.pillars[i];
+            this.SafeLayout[pillar / this.maxCol][pillar % this.maxCol].addOverlap(this.SafeLayout[row][col]);
+            refresh(pillar / this.maxCol, pillar % this.maxCol);
         }
     }
 
     /**
-     * Takes in coordinates (row, col) and sets all tiles in the cardinal directions to beams from those coordinates
+     * Takes in coordinates (row, col) and lights every tile in the cardinal directions from those coordinates
      * until met with a pillar or wall.
      * meant to be used when a new laser is placed, using the laser's coordinates
-     * Precondition: the coordinates are valid.
+     * Precondition: the coordinates are valid and hold the new laser.
      * @param row the row for the set of beams to originate from.
      * @param col the column for the laser beams to follow
      */
     private void setBeams(int row, int col){
-        // Scanning order: Up, Down, Left, Right.
-        for(int r = (row - 1); r >= 0; r--){
-            // Stops when a pillar is hit.
-            if(this.SafeLayout[r][col].isType(PILLAR)){
-                break;
-            }
-            //adds the beams.
-            add(r, col, BEAM);
-        }for(int r = (row + 1); r < this.maxRow; r++){
-            if(this.SafeLayout[r][col].isType(PILLAR)){
-                break;
-            }add(r, col, BEAM);
-        }for(int c = (col - 1); c >= 0; c--){
-            if(this.SafeLayout[row][c].isType(PILLAR)){
-                break;
-            }add(row, c, BEAM);
-        }for(int c = (col + 1); c < this.maxCol; c++){
-            if(this.SafeLayout[row][c].isType(PILLAR)){
-                break;
-            }add(row, c, BEAM);
+        Card laser = this.SafeLayout[row][col];
+        int cell = row * this.maxCol + col;
+        if(Metrics.ENABLED){
+            BEAM_CELLS.record(this.index.colLast[cell] - this.index.colFirst[cell]
+                    + this.index.rowLast[cell] - this.index.rowFirst[cell]);
+        }
+        // Scanning order: Up, Down, Left, Right, each running to the end of the laser's segment.
+        for(int r = (row - 1); r >= this.index.colFirst[cell]; r--){
+            light(r, col, laser);
+        }for(int r = (row + 1); r <= this.index.colLast[cell]; r++){
+            light(r, col, laser);
+        }for(int c = (col - 1); c >= this.index.rowFirst[cell]; c--){
+            light(row, c, laser);
+        }for(int c = (col + 1); c <= this.index.rowLast[cell]; c++){
+            light(row, c, laser);
+        }
+    }
+
+    /**
+     * Adds one to the amount of lasers shining on a tile, turning empty floor into a beam.
+     * If the tile is a laser, it and the source laser now see each other, so each goes into the other's overlap.
+     * @param row the row of the tile
+     * @param col the column of the tile
+     * @param source the laser shining on the tile, null if there is none.
+     */
+    private void light(int row, int col, Card source){
+        Card card = this.SafeLayout[row][col];
+        this.beams[row][col]++;
+        if(card.isType(NONE)){
+            card.setCardType(BEAM);
+        }else if(card.isType(LASER) && source != null){
+            card.addOverlap(source);
+            source.addOverlap(card);
+        }
+        refresh(row, col);
+    }
+
+    /**
+     * Takes one away from the amount of lasers shining on a tile, turning a beam back into empty floor once
+     * nothing shines on it anymore.
+     * @param row the row of the tile
+     * @param col the column of the tile
+     * @param source the laser that stopped shining on the tile.
+     */
+    private void darken(int row, int col, Card source){
+        Card card = this.SafeLayout[row][col];
+        this.beams[row][col]--;
+        if(card.isType(BEAM) && this.beams[row][col] == 0){
+            card.setCardType(NONE);
+        }else if(card.isType(LASER)){
+            card.overlap.remove(source);
         }
+        refresh(row, col);
     }
 
     /**
@@ -273,25 +561,145 @@ public class Safe {
      * Removes all traces of that laser ever existing.
      * @param row Row being removed
      * @param col Column being removed
+     * @return true if a laser was removed.
+     */
+    public boolean remove(int row, int col){
+        long start = Metrics.start();
+        boolean removed = takeAway(row, col);
+        Metrics.since(REMOVE_TIME, start);
+        return removed;
+    }
+
+    /**
+     * The body of remove, kept apart so remove can be timed.
      */
-    public void remove(int row, int col){
+    private boolean takeAway(int row, int col){
         //Checks that the cords are inbounds.
-        if(row > maxRow || col > maxCol){
-            System.out.println("Incorrect Coordinates...");
+        if(row < 0 || col < 0 || row >= maxRow || col >= maxCol){
+            listener.rejected(row, col, SafeListener.Problem.BAD_COORDINATES);
+            return false;
         }
         // If we are trying to remove something that is not a Laser.
         else if(this.SafeLayout[row][col].getCardType() != cType.LASER){
-            System.out.println("No Laser at coordinates...");
+            listener.rejected(row, col, SafeListener.Problem.NO_LASER);
+            return false;
+        }
+        takeLaser(row, col);
+        record(row * this.maxCol + col, REMOVED);
+        listener.laserRemoved(row, col);
+        return true;
+    }
+
+    /**
+     * Turns a floor card into a laser and casts its beams.
+     * Precondition: the coordinates are valid and hold a floor card.
+     * @param row Row being placed
+     * @param col Column being placed
+     */
+    private void placeLaser(int row, int col){
+        //turn the floor card into a laser.
+        this.SafeLayout[row][col].setCardType(LASER);
+        this.hash ^= Zobrist.key(row * this.maxCol + col);
+
+        //Set the beams for that laser.
+        setBeams(row, col);
+        refresh(row, col);
+
+        //Add this laser as being powered by the pillar.
+        testForPillars(row, col);
+    }
+
+    /**
+     * Turns a laser back into floor and takes away its beams.
+     * Precondition: the coordinates are valid and hold a laser.
+     * @param row Row being removed
+     * @param col Column being removed
+     */
+    private void takeLaser(int row, int col){
+        Card laser = this.SafeLayout[row][col];
+        //removes the Laser from being "powered" by the pillar.
+        removeFromPillars(row, col, laser);
+        //Removes the beams that laser created.
+        removeFromBeams(row, col, laser);
+        //turns the card back into floor, still lit if another laser shines on it.
+        laser.getOverlap().clear();
+        laser.setCardType(this.beams[row][col] > 0 ? BEAM : NONE);
+        this.hash ^= Zobrist.key(row * this.maxCol + col);
+        refresh(row, col);
+    }
+
+    /**
+     * Writes a move to the journal, dropping any moves that were undone and could have been redone.
+     * @param cell the row major index of the laser
+     * @param op ADDED or REMOVED
+     */
+    private void record(int cell, int op){
+        if(this.journalSize == this.journal.length){
+            int[] bigger = new int[this.journal.length * 2];
+            System.arraycopy(this.journal, 0, bigger, 0, this.journalSize);
+            this.journal = bigger;
+        }
+        this.journal[this.journalSize++] = (cell << 1) | op;
+        this.journalTop = this.journalSize;
+    }
+
+    /**
+     * Plays a journal entry forwards or backwards. Each laser only walks its own four rays, so no other laser
+     * on the safe is recast.
+     * @param entry the encoded move
+     * @param forwards true to redo the move, false to undo it.
+     */
+    private void replay(int entry, boolean forwards){
+        int cell = entry >>> 1;
+        int row = cell / this.maxCol;
+        int col = cell % this.maxCol;
+        if(((entry & 1) == ADDED) == forwards){
+            placeLaser(row, col);
+            listener.laserAdded(row, col);
         }else{
-            //Creates a card for the blank space
-            Card space = new Card(row, col, NONE);
-            this.SafeLayout[row][col] = space;
-            //removes the Laser from being "powered" by the pillar.
-            removeFromPillars(row, col);
-            //Removes the beams that laser created.
-            removeFromBeams(row, col);
-            System.out.println("Laser removed @ (" + row + ", "+ col+ ")");
+            takeLaser(row, col);
+            listener.laserRemoved(row, col);
+        }
+    }
 
+    /**
+     * @return a checkpoint that rollbackTo can return the safe to.
+     */
+    public int checkpoint(){
+        return this.journalSize;
+    }
+
+    /**
+     * Undoes the last add or remove.
+     * @return false if there was nothing to undo.
+     */
+    public boolean undo(){
+        if(this.journalSize == 0){
+            return false;
+        }
+        replay(this.journal[--this.journalSize], false);
+        return true;
+    }
+
+    /**
+     * Redoes the last move that was undone, as long as nothing was added or removed since.
+     * @return false if there was nothing to redo.
+     */
+    public boolean redo(){
+        if(this.journalSize == this.journalTop){
+            return false;
+        }
+        replay(this.journal[this.journalSize++], true);
+        return true;
+    }
+
+    /**
+     * Undoes every move made after a checkpoint. The undone moves can still be redone.
+     * @param checkpoint a value returned by checkpoint()
+     */
+    public void rollbackTo(int checkpoint){
+        while(this.journalSize > checkpoint){
+            undo();
         }
     }
 
@@ -300,180 +708,134 @@ public class Safe {
      * Removes the Laser from being powered by the pillars next to it.
      * @param row Row being removed
      * @param col Column being removed
+     * @param laser the laser being removed
      */
-    private void removeFromPillars(int row, int col){
+    private void removeFromPillars(int row, int col, Card laser){
         // Order: Down, Up, Right, Left.
-        // If the pillar is in bounds and is powering the Laser.
-        if((row + 1 < maxRow) && ((this.SafeLayout[row + 1][col].isType(PILLAR)) && (this.SafeLayout[row + 1][col].overlapNotEmpty()))){
-            // remove one laser from the amount of lasers the pillar is powering.
-            this.SafeLayout[row + 1][col].overlap.remove(0);
-        }if((row - 1 >= 0) && ((this.SafeLayout[row - 1][col].isType(PILLAR)) && (this.SafeLayout[row - 1][col].overlapNotEmpty()))){
-            this.SafeLayout[row - 1][col].overlap.remove(0);
-        }if((col + 1 < maxCol) && (this.SafeLayout[row][col + 1].isType(PILLAR)) && (this.SafeLayout[row][col + 1].overlapNotEmpty())){
-            this.SafeLayout[row][col + 1].overlap.remove(0);
-        }if((col - 1 >= 0) && ((this.SafeLayout[row][col - 1].isType(PILLAR)) && (this.SafeLayout[row][col - 1].overlapNotEmpty()))){
-            this.SafeLayout[row][col - 1].overlap.remove(0);
+        int cell = row * this.maxCol + col;
+        for(int i = this.index.pillarStart[cell]; i < this.index.pillarStart[cell + 1]; i++){
+            int pillar = this.index.pillars[i];
+            this.SafeLayout[pillar / this.maxCol][pillar % this.maxCol].overlap.remove(laser);
+            refresh(pillar / this.maxCol, pillar % this.maxCol);
         }
     }
 
     /**
      * Helper function of remove.
-     * Removes the lasers beams and removes the beams from any lasers they collide with.
+     * Walks the removed laser's four beams and takes one away from the count of every tile they crossed, so
+     * tiles other lasers still shine on stay lit without the other lasers being recast.
      * @param row The row of the laser being removed
      * @param col the column of the laser being removed.
+     * @param laser the laser being removed
      */
-    private void removeFromBeams(int row, int col){
-        //Scanning order: Up, Down, Left Right.
-        //Creates a new Card that will replace the beam.
-        Card none = new Card(row, col, NONE);
-        //Checks all cards above the laser being removed.
-        for(int r = (row - 1); r >= 0; r--){
-            Card card = this.SafeLayout[r][col];
-            // If we hit a pillar Stop.
-            if(card.isType(PILLAR)){
-                break;
-            }else if((card.isType(LASER)) && (card.overlapNotEmpty())){
-                // if we hit a laser that has one laser added to its overlap, remove one beam from it.
-                this.SafeLayout[r][col].overlap.remove(0);
-            }else if(card.isType(BEAM)){
-                //if the card we are checking is a beam, change it to a blank card.
-                this.SafeLayout[r][col] = none;
-            }
+    private void removeFromBeams(int row, int col, Card laser){
+        int cell = row * this.maxCol + col;
+        if(Metrics.ENABLED){
+            BEAM_CELLS.record(this.index.colLast[cell] - this.index.colFirst[cell]
+                    + this.index.rowLast[cell] - this.index.rowFirst[cell]);
         }
-        for(int r = (row + 1); r < this.maxRow; r++){
-            Card card = this.SafeLayout[r][col];
-            if(card.isType(PILLAR)){
-                break;
-            }else if((card.isType(LASER)) && (card.overlapNotEmpty())){
-                this.SafeLayout[r][col].overlap.remove(0);
-            }else if(card.isType(BEAM)){
-                this.SafeLayout[r][col] = none;
-            }
+        //Scanning order: Up, Down, Left Right.
+        for(int r = (row - 1); r >= this.index.colFirst[cell]; r--){
+            darken(r, col, laser);
         }
-        for(int c = (col - 1); c >= 0; c--){
-            Card card = this.SafeLayout[row][c];
-            if(card.isType(PILLAR)){
-                break;
-            }else if((card.isType(LASER)) && (card.overlapNotEmpty())){
-                this.SafeLayout[row][c].overlap.remove(0);
-            }else if(card.isType(BEAM)){
-                this.SafeLayout[row][c] = none;
-            }
+        for(int r = (row + 1); r <= this.index.colLast[cell]; r++){
+            darken(r, col, laser);
         }
-        for(int c = (col + 1); c < this.maxCol; c++){
-            Card card = this.SafeLayout[row][c];
-            if(card.isType(PILLAR)){
-                break;
-            }else if((card.isType(LASER)) && (card.overlapNotEmpty())){
-                this.SafeLayout[row][c].overlap.remove(0);
-            }else if(card.isType(BEAM)){
-                this.SafeLayout[row][c] = none;
-            }
+        for(int c = (col - 1); c >= this.index.rowFirst[cell]; c--){
+            darken(row, c, laser);
         }
-        // Checks for lasers on the board, reset the lasers they create to fill spots that should not be empty.
-        for(int r = 0; r < this.maxRow; r++){
-            for(int c = 0; c < this.maxCol; c++) {
-                if(this.SafeLayout[r][c].isType(LASER)){
-                    setBeamsOnRemove(r, c);
-                }
-            }
+        for(int c = (col + 1); c <= this.index.rowLast[cell]; c++){
+            darken(row, c, laser);
         }
     }
 
     /**
-     * Helper function to Remove from beams
-     * Sets beams of all lasers to what they should be after removing an intersecting beam
-     * This was needed because if setBeams was called normally, If there where two lasers places on the board
-     * and they both intersected another laser source, it would count as two intersections at the laser source
-     * that was placed first.
-     *
-     * This was a odd edge case and a pain in the butt to trouble shoot, because the error didnt appear until
-     * we tried completely filling the safe and removing the ones that didnt belong, It took a good hour or so to
-     * work out the cause of the bug.
-     *
-     * To fix it we do the same thing as the normal process for setting the beams, but only add the beams on blank spaces.
-     * this prevents that duplication error. when adding multiple lasers in incorrect positions.
-     *
-     * @param row Row of laser being removed.
-     * @param col Column of laser being removed.
-     */
-    private void setBeamsOnRemove(int row, int col){
-        for(int r = (row - 1); r >= 0; r--){
-            // Stops when a pillar is hit.
-            if(this.SafeLayout[r][col].isType(PILLAR)){
-                break;
-            }else if(this.SafeLayout[r][col].isType(NONE)) {
-                //adds the beams.
-                add(r, col, BEAM);
-            }
-        }for(int r = (row + 1); r < this.maxRow; r++){
-            if(this.SafeLayout[r][col].isType(PILLAR)){
-                break;
-            }else if(this.SafeLayout[r][col].isType(NONE)) {
-                add(r, col, BEAM);
-            }
-        }for(int c = (col - 1); c >= 0; c--){
-            if(this.SafeLayout[row][c].isType(PILLAR)){
-                break;
-            }else if(this.SafeLayout[row][c].isType(NONE)) {
-                add(row, c, BEAM);
-            }
-        }for(int c = (col + 1); c < this.maxCol; c++){
-            if(this.SafeLayout[row][c].isType(PILLAR)){
-                break;
-            }else if(this.SafeLayout[row][c].isType(NONE)) {
-                add(row, c, BEAM);
-            }
+     * Checks one cell against the verification rules. A cell fails if it is an unlit floor space, a numbered
+     * pillar without exactly its amount of lasers, or a laser that another laser's beam crosses.
+     * @param card the card being checked
+     * @return true if the cell breaks a rule.
+     */
+    private boolean violates(Card card){
+        switch(card.getCardType()){
+            case NONE:
+                return true;
+            case PILLAR:
+                // Any lasers >4 means it can have any amount of lasers.
+                int nLasers = ((Pillar)card).getnLasers();
+                return nLasers <= 4 && card.getOverlap().size() != nLasers;
+            case LASER:
+                return this.beams[card.getRow()][card.getCol()] > 0;
+            default:
+                return false;
         }
     }
 
+    /**
+     * Updates the violation counters for a single cell, called after every change made to that cell.
+     * @param row the row of the cell that changed
+     * @param col the column of the cell that changed
+     */
+    private void refresh(int row, int col){
+        int cell = row * this.maxCol + col;
+        boolean bad = violates(this.SafeLayout[row][col]);
+        if(bad != this.violating.get(cell)){
+            this.violating.set(cell, bad);
+            this.nViolations += bad ? 1 : -1;
+        }
+    }
 
+    /**
+     * Rebuilds the violation counters from scratch, used when a whole new layout is made.
+     */
+    private void recount(){
+        this.violating = new BitSet(this.maxRow * this.maxCol);
+        this.nViolations = 0;
+        for(int row = 0; row < this.maxRow; row++){
+            for(int col = 0; col < this.maxCol; col++){
+                refresh(row, col);
+            }
+        }
+    }
 
+    /**
+     * Lists every cell that currently breaks a rule, in the same top-down order verify scans in.
+     * The list comes straight from the counters kept by add and remove, so the board is not rescanned.
+     * @return the offending cards; empty if the safe is valid.
+     */
+    public List<Card> violations(){
+        List<Card> cards = new ArrayList<>(this.nViolations);
+        for(int cell = this.violating.nextSetBit(0); cell >= 0; cell = this.violating.nextSetBit(cell + 1)){
+            cards.add(this.SafeLayout[cell / this.maxCol][cell % this.maxCol]);
+        }
+        return cards;
+    }
 
     /**
      * verifies if the current safe layout is valid or not
      * A safe is valid if: each tile that is not a pillar has a laser or beam covering it
      * Each pillar has exactly the specified amount of lasers adjacent to it, except X (any amount)
      * No two lasers are in direct sight of each other in a cardinal direction.
+     * The answer comes from the violation counters kept up to date by add and remove, not a scan of the board.
      * @return true if the safe is valid, false if the safe is not valid.
      */
     public boolean verify(){
-        // Scan the whole board
-        for(int row = 0; row < this.maxRow; row++){
-            for(int col = 0; col < this.maxCol; col++){
-                //If we hit an empty space.
-                if(this.SafeLayout[row][col].isType(NONE)){
-                    System.out.println("Error Verifying at " + row + " " + col);
-                    return false;
-                }
-                // If we hit a pillar.
-                if(this.SafeLayout[row][col].isType(PILLAR)){
-                    //Check to see if the pillar has the right amount of Lasers being powered.
-                    Pillar card =  (Pillar)this.SafeLayout[row][col];
-                    ArrayList<Card> overlap = card.getOverlap();
-                    // Any lasers >4 means it can have any amount of lasers.
-                    if(card.getnLasers() > 4){
-                        continue;
-                    }else if(overlap.size() != card.getnLasers()){
-                        // If it has the wrong amount of lasers being powered return false.
-                        System.out.println("Error Verifying at " + row + " " + col);
-                        return false;
-                    }
-                }
-                // If we are dealing with a Laser
-                if(this.SafeLayout[row][col].isType(LASER)){
-                    //Check to see if any lasers beams overlap with the laser.
-                    Laser card = (Laser)this.SafeLayout[row][col];
-                    ArrayList<Card> overlap = card.getOverlap();
-                    if(overlap.size() != 0){
-                        //If so return false.
-                        System.out.println("Error Verifying at " + row + " " + col);
-                        return false;
-                    }
-                }
-            }
+        long start = Metrics.start();
+        boolean valid = check();
+        Metrics.since(VERIFY_TIME, start);
+        return valid;
+    }
+
+    /**
+     * The body of verify, kept apart so verify can be timed.
+     */
+    private boolean check(){
+        if(this.nViolations == 0){
+            listener.verified();
+            return true;
         }
-        System.out.println("The safe is fully verified");
-        return true;
+        // Report the first offending cell from the top left, like a scan would.
+        int cell = this.violating.nextSetBit(0);
+        listener.verifyFailed(cell / this.maxCol, cell % this.maxCol);
+        return false;
     }
 }
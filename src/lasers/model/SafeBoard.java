@@ -0,0 +1,38 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SafeBoard.java
+ * @language: Java 14
+ *
+ * The operations every changeable safe representation supports, so the UI and the solvers do not care whether
+ * the safe is stored as Card objects or as bitsets. Code that only reads a safe takes a SafeView instead.
+ */
+
+import lasers.model.Card.cType;
+
+public interface SafeBoard extends SafeView {
+
+    /**
+     * Places a laser at the inputted coordinates.
+     * @param row Row being placed
+     * @param col Column being placed
+     * @param type the type of card, only LASER is placed by every safe.
+     * @return true if the card was placed.
+     */
+    boolean add(int row, int col, cType type);
+
+    /**
+     * Remove a laser at a position (row, col)
+     * @param row Row being removed
+     * @param col Column being removed
+     * @return true if a laser was removed.
+     */
+    boolean remove(int row, int col);
+
+    /**
+     * Sets the listener told about the results of add, remove and verify. Safes start out QUIET.
+     * @param listener the listener.
+     */
+    void setListener(SafeListener listener);
+}
@@ -0,0 +1,95 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SafeIndex.java
+ * @language: Java 14
+ *
+ * Line of sight and adjacency for every cell of a safe, worked out once from where the pillars are. A laser's
+ * beams run from its cell to the ends of its row and column segment, so with the ends stored per cell a beam is
+ * a plain loop over a range instead of a scan that checks every card for a pillar.
+ * Pillars only change when one is added, which rebuilds the index.
+ */
+
+final class SafeIndex {
+    final int cols;             // Columns in the safe
+    final int[] rowFirst;       // First column of each cell's row segment
+    final int[] rowLast;        // Last column of each cell's row segment
+    final int[] colFirst;       // First row of each cell's column segment
+    final int[] colLast;        // Last row of each cell's column segment
+    final int[] pillarStart;    // Where each cell's adjacent pillars start in pillars, size + 1 entries
+    final int[] pillars;        // Cells (row * cols + col) of the pillars next to every cell, cell by cell
+
+    /**
+     * @param layout the cards of the safe
+     * @param rows rows in the safe
+     * @param cols columns in the safe.
+     */
+    SafeIndex(Card[][] layout, int rows, int cols){
+        this.cols = cols;
+        int size = rows * cols;
+        this.rowFirst = new int[size];
+        this.rowLast = new int[size];
+        this.colFirst = new int[size];
+        this.colLast = new int[size];
+        boolean[] pillar = new boolean[size];
+        int nPillars = 0;
+        for(int row = 0; row < rows; row++){
+            for(int col = 0; col < cols; col++){
+                if(layout[row][col].isType(Card.cType.PILLAR)){
+                    pillar[row * cols + col] = true;
+                    nPillars++;
+                }
+            }
+        }
+
+        //walk each row, closing a segment at every pillar and at the wall.
+        for(int row = 0; row < rows; row++){
+            int first = 0;
+            for(int col = 0; col <= cols; col++){
+                if(col == cols || pillar[row * cols + col]){
+                    for(int c = first; c < col; c++){
+                        rowFirst[row * cols + c] = first;
+                        rowLast[row * cols + c] = col - 1;
+                    }
+                    first = col + 1;
+                }
+            }
+        }
+        //same thing down each column.
+        for(int col = 0; col < cols; col++){
+            int first = 0;
+            for(int row = 0; row <= rows; row++){
+                if(row == rows || pillar[row * cols + col]){
+                    for(int r = first; r < row; r++){
+                        colFirst[r * cols + col] = first;
+                        colLast[r * cols + col] = row - 1;
+                    }
+                    first = row + 1;
+                }
+            }
+        }
+
+        //every pillar is next to at most four cells.
+        this.pillarStart = new int[size + 1];
+        this.pillars = new int[nPillars * 4];
+        int n = 0;
+        for(int row = 0; row < rows; row++){
+            for(int col = 0; col < cols; col++){
+                int cell = row * cols + col;
+                pillarStart[cell] = n;
+                // Order: Bottom, Top, Right, Left.
+                if(row + 1 < rows && pillar[cell + cols]){
+                    pillars[n++] = cell + cols;
+                }if(row - 1 >= 0 && pillar[cell - cols]){
+                    pillars[n++] = cell - cols;
+                }if(col + 1 < cols && pillar[cell + 1]){
+                    pillars[n++] = cell + 1;
+                }if(col - 1 >= 0 && pillar[cell - 1]){
+                    pillars[n++] = cell - 1;
+                }
+            }
+        }
+        pillarStart[size] = n;
+    }
+}
@@ -0,0 +1,75 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SafeListener.java
+ * @language: Java 14
+ *
+ * Receives the results of the commands run on a safe. The safe itself never prints, so batch runs can use the
+ * QUIET listener and the PTUI plugs in a ConsoleListener to show the usual messages.
+ */
+
+public interface SafeListener {
+
+    /**
+     * The reasons a command can be turned down, with the message the console shows for each.
+     */
+    enum Problem {
+        BAD_COORDINATES("Incorrect Coordinates..."),
+        PILLAR_THERE("Pillar at coordinates..."),
+        LASER_THERE("Laser at coordinates..."),
+        NO_LASER("No Laser at coordinates...");
+
+        private final String message;
+
+        Problem(String message){
+            this.message = message;
+        }
+
+        public String getMessage(){
+            return this.message;
+        }
+    }
+
+    /** A listener that ignores everything. */
+    SafeListener QUIET = new SafeListener(){};
+
+    /**
+     * A laser was placed.
+     * @param row the laser's row
+     * @param col the laser's column
+     */
+    default void laserAdded(int row, int col){
+    }
+
+    /**
+     * A laser was taken off the safe.
+     * @param row the laser's row
+     * @param col the laser's column
+     */
+    default void laserRemoved(int row, int col){
+    }
+
+    /**
+     * An add or remove was turned down and the safe did not change.
+     * @param row the row given to the command
+     * @param col the column given to the command
+     * @param problem why it was turned down.
+     */
+    default void rejected(int row, int col, Problem problem){
+    }
+
+    /**
+     * verify found the safe to be valid.
+     */
+    default void verified(){
+    }
+
+    /**
+     * verify found the safe to be invalid.
+     * @param row the row of the first offending cell
+     * @param col the column of the first offending cell.
+     */
+    default void verifyFailed(int row, int col){
+    }
+}
@@ -0,0 +1,336 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SafeReader.java
+ * @language: Java 14
+ *
+ * Reads SafeFiles straight out of a byte buffer in a single pass, without making a String per line or token.
+ * A file may hold several safes back to back: each one starts at a line holding just its dimensions, and any
+ * other text between safes (such as the solutions written under the puzzles in data/) is skipped.
+ * Large files are memory-mapped in overlapping windows like a SafeArchive, so files past 2GB can be read too.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class SafeReader {
+    /** Grid value of a floor cell, pillars hold the amount of lasers they need ('X' is 10). */
+    public static final byte FLOOR = -1;
+    /** Files at least this big are memory-mapped instead of read onto the heap. */
+    private static final long MAP_THRESHOLD = 1 << 20;
+    private static final int WINDOW_STEP = 1 << 30;             // A window starts every 1GB...
+    private static final long WINDOW_SIZE = Integer.MAX_VALUE;  // ...and is 2GB long, so a line fits in one
+    private static final long MAX_CELLS = Integer.MAX_VALUE - 8;    // Most cells a grid array can hold
+
+    private final ByteBuffer[] windows; // The file, window w starting at byte w * WINDOW_STEP
+    private int window;                 // The window being read
+    private ByteBuffer buffer;          // windows[window]
+    private int limit;                  // Bytes in the buffer
+    private int pos;                    // Next byte to read, in the buffer
+
+    private int rows;                   // Rows of the safe last read
+    private int cols;                   // Columns of the safe last read
+    private byte[] grid;                // Row major cells of the safe last read, null if it was streamed
+
+    /**
+     * Told about every pillar of a safe as it is read, for safes too big to hold as a grid.
+     */
+    public interface PillarSink {
+        /**
+         * @param row the row of the pillar
+         * @param col the column of the pillar
+         * @param need the amount of lasers the pillar needs ('X' is 10).
+         */
+        void pillar(int row, int col, int need);
+    }
+
+    /**
+     * @param buffer the contents of a SafeFile, read from its current position.
+     */
+    public SafeReader(ByteBuffer buffer){
+        this(new ByteBuffer[]{buffer});
+        this.pos = buffer.position();
+    }
+
+    private SafeReader(ByteBuffer[] windows){
+        this.windows = windows;
+        this.buffer = windows[0];
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * Opens a SafeFile, memory mapping it if it is large. Every window is mapped up front, which only takes
+     * address space, so the file is closed straight away.
+     * @param SafeFile the path of the SafeFile
+     * @return a reader positioned before the first safe.
+     * @throws IOException if the file can not be read.
+     */
+    public static SafeReader open(String SafeFile) throws IOException {
+        Path path = Paths.get(SafeFile);
+        try(FileChannel channel = FileChannel.open(path)){
+            long size = channel.size();
+            if(size >= MAP_THRESHOLD){
+                int count = size <= WINDOW_SIZE ? 1 : (int)((size - WINDOW_SIZE - 1) / WINDOW_STEP) + 2;
+                ByteBuffer[] windows = new ByteBuffer[count];
+                for(int w = 0; w < count; w++){
+                    long start = (long)w * WINDOW_STEP;
+                    windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                            Math.min(WINDOW_SIZE, size - start));
+                }
+                return new SafeReader(windows);
+            }
+        }
+        return new SafeReader(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    /**
+     * Reads the next safe in the file.
+     * @return the safe, or null once there are no safes left.
+     * @throws IOException if the safe's grid is malformed.
+     */
+    public Safe next() throws IOException {
+        if(!advance()){
+            return null;
+        }
+        return new Safe(rows, cols, grid);
+    }
+
+    /**
+     * Reads the next safe's dimensions and grid, made available through the getters.
+     * @return false once there are no safes left.
+     * @throws IOException if the safe's grid is malformed.
+     */
+    public boolean advance() throws IOException {
+        if(!findHeader()){
+            return false;
+        }
+        this.grid = new byte[cells()];
+        for(int row = 0; row < rows; row++){
+            readRow(row, null);
+        }
+        return true;
+    }
+
+    /**
+     * Reads the next safe's dimensions and hands its pillars to sink as they are read, without ever building its
+     * grid, so the size of the safe is only bounded by its pillars. getGrid returns null until the next advance.
+     * @param sink told about every pillar, row by row
+     * @return false once there are no safes left.
+     * @throws IOException if the safe's grid is malformed.
+     */
+    public boolean advance(PillarSink sink) throws IOException {
+        if(!findHeader()){
+            return false;
+        }
+        this.grid = null;
+        for(int row = 0; row < rows; row++){
+            readRow(row, sink);
+        }
+        return true;
+    }
+
+    /** Getters for the safe last read **/
+    public int getRows(){
+        return this.rows;
+    }
+
+    public int getCols(){
+        return this.cols;
+    }
+
+    /**
+     * @return FLOOR or the amount of lasers each pillar needs, row major, or null if the safe was streamed.
+     */
+    public byte[] getGrid(){
+        return this.grid;
+    }
+
+    /**
+     * Reads the solution written under the safe last read, if there is one: rows such as "0|* L * 0" where every
+     * 'L' is a laser. Stops at the next safe, so it can be called between advance and the next advance.
+     * @return the cells holding a laser, row major, or null if no solution follows the safe.
+     * @throws IOException if the safe has too many cells to hold its solution in an array.
+     */
+    public boolean[] readSolution() throws IOException {
+        boolean[] lasers = new boolean[cells()];
+        boolean found = false;
+        while(slide() && !atHeader()){
+            skipBlanks();
+            int row = readNumber();
+            if(row >= 0 && row < rows && pos < limit && buffer.get(pos) == '|'){
+                pos++;
+                found = true;
+                for(int col = 0; col < cols; col++){
+                    skipBlanks();
+                    if(atEndOfLine()){
+                        break;
+                    }
+                    lasers[row * cols + col] = buffer.get(pos) == 'L';
+                    while(pos < limit && !isBlank(buffer.get(pos)) && !atEndOfLine()){
+                        pos++;
+                    }
+                }
+            }
+            skipLine();
+        }
+        return found ? lasers : null;
+    }
+
+    /**
+     * @return the cells of the safe last read.
+     * @throws IOException if there are too many to hold in an array; advance(PillarSink) can still read it.
+     */
+    private int cells() throws IOException {
+        if((long)rows * cols > MAX_CELLS){
+            throw new IOException("A " + rows + "x" + cols + " safe has too many cells to hold as a grid");
+        }
+        return rows * cols;
+    }
+
+    /**
+     * Moves on to the next window once the position is past the point where it starts, which leaves at least
+     * 1GB of the new window ahead. Only called at the start of a line, so a line is always read from one window.
+     * @return true if there are bytes left to read.
+     */
+    private boolean slide(){
+        if(pos >= WINDOW_STEP && window + 1 < windows.length){
+            buffer = windows[++window];
+            limit = buffer.limit();
+            pos -= WINDOW_STEP;
+        }
+        return pos < limit;
+    }
+
+    /**
+     * @return true if the line starting at the current position holds exactly two numbers, the dimensions of
+     * a safe. The position is left where it was.
+     */
+    private boolean atHeader(){
+        int start = pos;
+        skipBlanks();
+        int first = readNumber();
+        boolean header = false;
+        if(first > 0 && skipBlanks()){
+            int second = readNumber();
+            skipBlanks();
+            header = second > 0 && atEndOfLine();
+        }
+        pos = start;
+        return header;
+    }
+
+    /**
+     * Skips lines until one that holds exactly two numbers, and reads them as the dimensions.
+     * @return false if the end of the buffer was reached first.
+     */
+    private boolean findHeader(){
+        while(slide()){
+            if(atHeader()){
+                skipBlanks();
+                this.rows = readNumber();
+                skipBlanks();
+                this.cols = readNumber();
+                skipLine();
+                return true;
+            }
+            skipLine();
+        }
+        return false;
+    }
+
+    /**
+     * Reads one row of cells, which must all be on the same line.
+     * @param row the row being read
+     * @param sink told about the row's pillars, or null to store the row in grid
+     * @throws IOException if a cell is missing or not one of '.', 'X' or a number.
+     */
+    private void readRow(int row, PillarSink sink) throws IOException {
+        slide();
+        for(int col = 0; col < cols; col++){
+            skipBlanks();
+            if(atEndOfLine()){
+                throw new IOException("Row " + row + " has " + col + " cells, expected " + cols);
+            }
+            byte c = buffer.get(pos);
+            byte cell;
+            if(c == '.' || c == 'X'){
+                pos++;
+                cell = c == '.' ? FLOOR : 10;
+            }else{
+                int number = readNumber();
+                if(number < 0){
+                    throw new IOException("Unknown cell '" + (char)c + "' at row " + row + " col " + col);
+                }
+                cell = (byte)Math.min(number, 10);
+            }
+            if(pos < limit && !isBlank(buffer.get(pos)) && !atEndOfLine()){
+                throw new IOException("Unknown cell at row " + row + " col " + col);
+            }
+            if(sink == null){
+                grid[row * cols + col] = cell;
+            }else if(cell != FLOOR){
+                sink.pillar(row, col, cell);
+            }
+        }
+        skipLine();
+    }
+
+    /**
+     * Reads an unsigned decimal number.
+     * @return the number, or -1 if there are no digits at the current position.
+     */
+    private int readNumber(){
+        int start = pos;
+        int value = 0;
+        while(pos < limit){
+            byte c = buffer.get(pos);
+            if(c < '0' || c > '9'){
+                break;
+            }
+            // Clamp absurd values rather than overflow.
+            value = Math.min(value * 10 + (c - '0'), 1 << 24);
+            pos++;
+        }
+        return pos == start ? -1 : value;
+    }
+
+    /**
+     * @return true if at least one space or tab was skipped.
+     */
+    private boolean skipBlanks(){
+        int start = pos;
+        while(pos < limit && isBlank(buffer.get(pos))){
+            pos++;
+        }
+        return pos > start;
+    }
+
+    private static boolean isBlank(byte c){
+        return c == ' ' || c == '\t';
+    }
+
+    private boolean atEndOfLine(){
+        return pos >= limit || buffer.get(pos) == '\n' || buffer.get(pos) == '\r';
+    }
+
+    /**
+     * Moves past the next newline. Lines between safes may be of any length, so a long one is followed into the
+     * next windows.
+     */
+    private void skipLine(){
+        while(true){
+            while(pos < limit && buffer.get(pos) != '\n'){
+                pos++;
+            }
+            if(pos < limit || !slide()){
+                break;
+            }
+        }
+        pos++;
+    }
+}
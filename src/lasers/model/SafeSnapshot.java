@@ -0,0 +1,252 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SafeSnapshot.java
+ * @language: Java 14
+ *
+ * An immutable version of a safe, for what-if exploration, parallel search and session history. Pillars are
+ * shared by every version of a safe. Lasers are kept as one small bitset per row and one per column, and a new
+ * version made by withLaser or withoutLaser copies only the bitsets of the row and column it changes, sharing
+ * every other one with its parent. A version therefore costs O(rows + cols) instead of a copy of the grid, and
+ * since nothing is ever written after construction any version can be read from any thread without locking.
+ * A snapshot is only a SafeView, so code that changes safes can never be handed one by mistake.
+ */
+
+import java.util.Arrays;
+
+import static lasers.model.Card.cType.*;
+
+public final class SafeSnapshot extends BitGrid {
+    private final Pillars pillars;      // shared by every version of the safe
+    private final long[][] laserRows;   // laser bitset of every row, shared with other versions
+    private final long[][] laserCols;   // laser bitset of every column, shared with other versions
+    private final int nLasers;          // lasers on this version
+    private final long hash;            // xor of the Zobrist keys of every laser, as Safe.getHash
+
+    /**
+     * The pillar layout, which never changes between versions.
+     */
+    private static final class Pillars {
+        final int maxRow;           // maximum height of the safe interior.
+        final int maxCol;           // maximum width of the safe interior.
+        final int rowWords;         // words in each row bitset
+        final int colWords;         // words in each column bitset
+        final long[] rows;          // pillar bitset of every row
+        final long[] cols;          // pillar bitset of every column
+        final byte[] need;          // lasers each pillar needs, row major
+
+        Pillars(int maxRow, int maxCol, byte[] grid){
+            this.maxRow = maxRow;
+            this.maxCol = maxCol;
+            this.rowWords = Bits.words(maxCol);
+            this.colWords = Bits.words(maxRow);
+            this.rows = new long[maxRow * rowWords];
+            this.cols = new long[maxCol * colWords];
+            this.need = new byte[maxRow * maxCol];
+            for(int r = 0; r < maxRow; r++){
+                for(int c = 0; c < maxCol; c++){
+                    if(grid[r * maxCol + c] != SafeReader.FLOOR){
+                        Bits.set(rows, r * rowWords, c);
+                        Bits.set(cols, c * colWords, r);
+                        need[r * maxCol + c] = grid[r * maxCol + c];
+                    }
+                }
+            }
+        }
+    }
+
+    private SafeSnapshot(Pillars pillars, long[][] laserRows, long[][] laserCols, int nLasers, long hash){
+        this.pillars = pillars;
+        this.laserRows = laserRows;
+        this.laserCols = laserCols;
+        this.nLasers = nLasers;
+        this.hash = hash;
+    }
+
+    /**
+     * A safe with its pillars laid out and no lasers.
+     * @param row rows in the safe
+     * @param col columns in the safe
+     * @param grid SafeReader.FLOOR or the amount of lasers each pillar needs, row major
+     * @return the first version of the safe.
+     */
+    public static SafeSnapshot of(int row, int col, byte[] grid){
+        Pillars pillars = new Pillars(row, col, grid);
+        // Every row starts out sharing one empty bitset, and every column another.
+        long[][] laserRows = new long[row][];
+        long[][] laserCols = new long[col][];
+        Arrays.fill(laserRows, new long[pillars.rowWords]);
+        Arrays.fill(laserCols, new long[pillars.colWords]);
+        return new SafeSnapshot(pillars, laserRows, laserCols, 0, 0);
+    }
+
+    /**
+     * Takes a snapshot of another safe's pillars and lasers.
+     * @param other the safe being copied
+     * @return a version holding the same pillars and lasers.
+     */
+    public static SafeSnapshot of(SafeView other){
+        int rows = other.getRows();
+        int cols = other.getCols();
+        byte[] grid = new byte[rows * cols];
+        for(int row = 0; row < rows; row++){
+            for(int col = 0; col < cols; col++){
+                boolean pillar = other.getCardType(row, col) == PILLAR;
+                grid[row * cols + col] = pillar ? (byte)other.getnLasers(row, col) : SafeReader.FLOOR;
+            }
+        }
+        Pillars pillars = new Pillars(rows, cols, grid);
+        long[][] laserRows = new long[rows][];
+        long[][] laserCols = new long[cols][];
+        for(int row = 0; row < rows; row++){
+            laserRows[row] = new long[pillars.rowWords];
+        }
+        for(int col = 0; col < cols; col++){
+            laserCols[col] = new long[pillars.colWords];
+        }
+        int nLasers = 0;
+        long hash = 0;
+        for(int row = 0; row < rows; row++){
+            for(int col = 0; col < cols; col++){
+                if(other.getCardType(row, col) == LASER){
+                    Bits.set(laserRows[row], 0, col);
+                    Bits.set(laserCols[col], 0, row);
+                    nLasers++;
+                    hash ^= Zobrist.key(row * cols + col);
+                }
+            }
+        }
+        return new SafeSnapshot(pillars, laserRows, laserCols, nLasers, hash);
+    }
+
+    /**
+     * @param row Row of the laser
+     * @param col Column of the laser
+     * @return a new version with a laser added, or this version if the cell is a pillar, already holds a laser
+     * or is off the safe.
+     */
+    public SafeSnapshot withLaser(int row, int col){
+        if(!onSafe(row, col) || Bits.get(pillars.rows, row * pillars.rowWords, col)
+                || Bits.get(laserRows[row], 0, col)){
+            return this;
+        }
+        return changed(row, col, nLasers + 1);
+    }
+
+    /**
+     * @param row Row of the laser
+     * @param col Column of the laser
+     * @return a new version with the laser taken away, or this version if there is no laser there.
+     */
+    public SafeSnapshot withoutLaser(int row, int col){
+        if(!onSafe(row, col) || !Bits.get(laserRows[row], 0, col)){
+            return this;
+        }
+        return changed(row, col, nLasers - 1);
+    }
+
+    /**
+     * Makes the version with one cell's laser flipped, copying only that row's and column's bitsets.
+     */
+    private SafeSnapshot changed(int row, int col, int nLasers){
+        long[][] rows = laserRows.clone();
+        long[][] cols = laserCols.clone();
+        rows[row] = rows[row].clone();
+        cols[col] = cols[col].clone();
+        rows[row][col >>> 6] ^= 1L << col;
+        cols[col][row >>> 6] ^= 1L << row;
+        return new SafeSnapshot(pillars, rows, cols, nLasers, hash ^ Zobrist.key(row * pillars.maxCol + col));
+    }
+
+    private boolean onSafe(int row, int col){
+        return row >= 0 && col >= 0 && row < pillars.maxRow && col < pillars.maxCol;
+    }
+
+    /**
+     * Builds a mutable Safe holding this version's pillars and lasers, such as to keep playing from it.
+     * @return the new safe.
+     */
+    public Safe toSafe(){
+        byte[] grid = new byte[pillars.need.length];
+        for(int cell = 0; cell < grid.length; cell++){
+            int row = cell / pillars.maxCol;
+            int col = cell % pillars.maxCol;
+            grid[cell] = Bits.get(pillars.rows, row * pillars.rowWords, col) ? pillars.need[cell] : SafeReader.FLOOR;
+        }
+        Safe safe = new Safe(pillars.maxRow, pillars.maxCol, grid);
+        for(int row = 0; row < pillars.maxRow; row++){
+            for(int col = 0; col < pillars.maxCol; col++){
+                if(Bits.get(laserRows[row], 0, col)){
+                    safe.add(row, col, LASER);
+                }
+            }
+        }
+        return safe;
+    }
+
+    /** Getters **/
+    public int getRows(){
+        return pillars.maxRow;
+    }
+
+    public int getCols(){
+        return pillars.maxCol;
+    }
+
+    public int getLasers(){
+        return this.nLasers;
+    }
+
+    /**
+     * @return a 64 bit Zobrist hash of the lasers, equal to Safe.getHash for a safe holding the same lasers.
+     */
+    public long getHash(){
+        return this.hash;
+    }
+
+    public int getnLasers(int row, int col){
+        return pillars.need[row * pillars.maxCol + col];
+    }
+
+    boolean pillarAt(int row, int col){
+        return Bits.get(pillars.rows, row * pillars.rowWords, col);
+    }
+
+    boolean laserAt(int row, int col){
+        return Bits.get(laserRows[row], 0, col);
+    }
+
+    int previousRowPillar(int row, int col){
+        return Bits.previous(pillars.rows, row * pillars.rowWords, col);
+    }
+
+    int nextRowPillar(int row, int col){
+        return Bits.next(pillars.rows, row * pillars.rowWords, col, pillars.maxCol);
+    }
+
+    int previousColPillar(int row, int col){
+        return Bits.previous(pillars.cols, col * pillars.colWords, row);
+    }
+
+    int nextColPillar(int row, int col){
+        return Bits.next(pillars.cols, col * pillars.colWords, row, pillars.maxRow);
+    }
+
+    int rowLasers(int row, int from, int to){
+        return Bits.count(laserRows[row], 0, from, to);
+    }
+
+    int colLasers(int col, int from, int to){
+        return Bits.count(laserCols[col], 0, from, to);
+    }
+
+    /**
+     * verifies if this version is valid or not, with the same rules as Safe.verify. Nothing is reported since
+     * snapshots have no listener.
+     * @return true if the safe is valid, false if the safe is not valid.
+     */
+    public boolean verify(){
+        return firstInvalid() < 0;
+    }
+}
@@ -0,0 +1,107 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SafeView.java
+ * @language: Java 14
+ *
+ * What can be read off any safe, whether it can be changed or not: its size, its cells and whether it verifies.
+ * The solvers and the hint engine only need this much, so they also work on immutable snapshots.
+ */
+
+import lasers.model.Card.cType;
+
+import java.io.PrintStream;
+
+public interface SafeView {
+
+    /**
+     * @return the number of rows in the safe.
+     */
+    int getRows();
+
+    /**
+     * @return the number of columns in the safe.
+     */
+    int getCols();
+
+    /**
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return PILLAR, LASER, BEAM if a laser lights the cell up, or NONE.
+     */
+    cType getCardType(int row, int col);
+
+    /**
+     * @param row the row of a pillar
+     * @param col the column of a pillar
+     * @return the amount of lasers the pillar requires, anything over 4 means any amount.
+     */
+    int getnLasers(int row, int col);
+
+    /**
+     * verifies if the current safe layout is valid or not, telling the safe's listener if it has one.
+     * @return true if the safe is valid, false if the safe is not valid.
+     */
+    boolean verify();
+
+    /**
+     * a method that prints out the safe in a 2d grid format, with rows and columns numbered.
+     */
+    default void printSafe(){
+        printSafe(System.out);
+    }
+
+    /**
+     * Prints the safe the same way as printSafe(), somewhere other than the console.
+     * @param out where the safe is printed.
+     */
+    default void printSafe(PrintStream out){
+        //prints the numbering for the columns.
+        out.print("   ");
+        for(int i = 0; i < getCols() ; i++ ){
+            out.print(i + " ");
+        }
+        out.println();
+        out.print("   ");
+        for(int i = 0; i < getCols() ; i++ ){
+            out.print("- ");
+        }
+        out.println();
+
+        for(int row = 0; row < getRows(); row++){
+            //for each row print the row's number.
+            out.print(row + "| ");
+            for(int col = 0; col < getCols(); col++){
+                //for each card from left to right, top to bottom.
+                switch(getCardType(row, col)){
+                    case NONE:
+                        //if the tile is a floor, print a ". " to represent empty floor space.
+                        out.print(". ");
+                        break;
+                    case PILLAR:
+                        //if the tile is a pillar, either print "X " if the tile is arbitrary.
+                        int nLasers = getnLasers(row, col);
+                        if(nLasers > 4){
+                            out.print("X ");
+                        }else {
+                            //print the required amount of lasers needed.
+                            out.print(nLasers + " ");
+                        }
+                        break;
+                    case LASER:
+                        //print "L " if the Card is a laser.
+                        out.print("L ");
+                        break;
+                    case BEAM:
+                        //if the Card is a beam, print "* ".
+                        out.print("* ");
+                        break;
+                }
+            }
+            //prints a new line for the next row of cards to be printed on.
+            out.println();
+        }
+        out.println();
+    }
+}
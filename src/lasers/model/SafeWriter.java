@@ -0,0 +1,77 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SafeWriter.java
+ * @language: Java 14
+ *
+ * Writes safes in the SafeFile format read by the SafeReader. A solution, when there is one, is written under the
+ * puzzle the same way the files in data/ show one; the SafeReader skips it when loading, so written safes can be
+ * concatenated into one file.
+ */
+
+public final class SafeWriter {
+
+    private SafeWriter(){
+    }
+
+    /**
+     * @param out where the safe is written
+     * @param rows rows in the safe
+     * @param cols columns in the safe
+     * @param grid SafeReader.FLOOR or the amount of lasers each pillar needs, row major
+     * @param lasers the cells holding a laser in a solution, or null to write only the puzzle.
+     */
+    public static void write(StringBuilder out, int rows, int cols, byte[] grid, boolean[] lasers){
+        out.append(rows).append(' ').append(cols).append('\n');
+        for(int row = 0; row < rows; row++){
+            for(int col = 0; col < cols; col++){
+                if(col > 0){
+                    out.append(' ');
+                }
+                out.append(symbol(grid, null, row * cols + col));
+            }
+            out.append('\n');
+        }
+        if(lasers == null){
+            return;
+        }
+        out.append('\n').append("A ").append(rows).append('x').append(cols).append(" puzzle with a solution:\n\n");
+        out.append(" ");
+        for(int col = 0; col < cols; col++){
+            out.append(' ').append(col);
+        }
+        out.append("\n  ");
+        for(int col = 0; col < cols * 2 - 1; col++){
+            out.append('-');
+        }
+        out.append('\n');
+        for(int row = 0; row < rows; row++){
+            out.append(row).append('|');
+            for(int col = 0; col < cols; col++){
+                if(col > 0){
+                    out.append(' ');
+                }
+                out.append(symbol(grid, lasers, row * cols + col));
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * @param grid the pillars of the safe
+     * @param lasers the solution's lasers, null to show floor as '.'
+     * @param cell the row major index of a cell
+     * @return the character for the cell.
+     */
+    private static char symbol(byte[] grid, boolean[] lasers, int cell){
+        byte value = grid[cell];
+        if(value == SafeReader.FLOOR){
+            if(lasers == null){
+                return '.';
+            }
+            return lasers[cell] ? 'L' : '*';
+        }
+        return value > 4 ? 'X' : (char)('0' + value);
+    }
+}
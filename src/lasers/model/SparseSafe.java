@@ -0,0 +1,484 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SparseSafe.java
+ * @language: Java 14
+ *
+ * A safe for huge, mostly empty layouts, where even one bit per cell is too much. Pillars and lasers are kept in
+ * 16x16 tiles that only exist while they hold something, so an empty stretch of floor costs no memory at all.
+ * The tiles are kept sorted both along the rows and down the columns, so walking a row or column only visits the
+ * tiles it crosses that exist. Beams are never stored: the run a cell's beam would cover is the interval between
+ * the nearest pillars either side of it, found by such a walk, and the cell is lit when that interval holds a
+ * laser.
+ */
+
+import lasers.model.Card.cType;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static lasers.model.Card.cType.*;
+
+public class SparseSafe implements SafeBoard {
+    private static final int TILE_BITS = 4;                 // tiles are 2^4 cells on a side
+    private static final int TILE = 1 << TILE_BITS;
+    private static final byte LASER_CELL = 1;               // tile value of a laser, floor is 0
+    private static final byte PILLAR_CELL = 2;              // tile value of a pillar needing 0 lasers
+
+    private final int maxRow;       // maximum height of the safe interior.
+    private final int maxCol;       // maximum width of the safe interior.
+    private final TreeMap<Long, Tile> tileRows = new TreeMap<>();  // tiles holding anything, by row then column
+    private final TreeMap<Long, Tile> tileCols = new TreeMap<>();  // the same tiles, by column then row
+    private SafeListener listener = SafeListener.QUIET; // told about the results of every command
+
+    /**
+     * One TILE x TILE square of the safe.
+     */
+    private static final class Tile {
+        final int row;                                  // first row of the tile
+        final int col;                                  // first column of the tile
+        final byte[] cells = new byte[TILE * TILE];     // 0 floor, LASER_CELL, or PILLAR_CELL + lasers needed
+        final char[] masks = new char[4 * TILE];        // the pillars and lasers of each row and column, as bits
+        Tile left, right, up, down;                     // the nearest tiles that exist either side of this one
+        int used;                                       // cells that are not floor
+
+        Tile(int row, int col){
+            this.row = row;
+            this.col = col;
+        }
+
+        /**
+         * @param column true to walk down a column of tiles, false to walk along a row of them
+         * @return the first position of the tile along the walk.
+         */
+        int start(boolean column){
+            return column ? row : col;
+        }
+
+        Tile before(boolean column){
+            return column ? up : left;
+        }
+
+        Tile after(boolean column){
+            return column ? down : right;
+        }
+
+        /**
+         * @param column true for a column of the tile, false for a row
+         * @param pillar true for the pillar mask, false for the laser mask
+         * @param line the row or column, only its position in the tile matters
+         * @return where the mask is in masks.
+         */
+        static int mask(boolean column, boolean pillar, int line){
+            return ((column ? 2 : 0) + (pillar ? 0 : 1)) * TILE + (line & (TILE - 1));
+        }
+
+        /**
+         * Flips the mask bits of a cell holding value, if it holds anything.
+         */
+        void flip(int row, int col, byte value){
+            if(value != 0){
+                masks[mask(false, value >= PILLAR_CELL, row)] ^= (char)(1 << (col & (TILE - 1)));
+                masks[mask(true, value >= PILLAR_CELL, col)] ^= (char)(1 << (row & (TILE - 1)));
+            }
+        }
+    }
+
+    /**
+     * Constructor that represents an empty safe of the given dimensions.
+     * @param row rows in the safe
+     * @param col columns in the safe
+     */
+    public SparseSafe(int row, int col){
+        this.maxRow = row;
+        this.maxCol = col;
+    }
+
+    /**
+     * Creates a safe from a SafeFile in one pass, placing each pillar into its tile as it is read so the safe's
+     * grid is never held in full.
+     * @param SafeFile the path of the SafeFile
+     * @return the loaded safe.
+     * @throws IOException for use in case the method fails to read from the file.
+     */
+    public static SparseSafe load(String SafeFile) throws IOException {
+        SafeReader reader = SafeReader.open(SafeFile);
+        SparseSafe[] safe = new SparseSafe[1];
+        boolean found = reader.advance((row, col, need) -> {
+            if(safe[0] == null){
+                safe[0] = new SparseSafe(reader.getRows(), reader.getCols());
+            }
+            safe[0].setPillar(row, col, need);
+        });
+        if(!found){
+            throw new IOException("No safe found in " + SafeFile);
+        }
+        return safe[0] == null ? new SparseSafe(reader.getRows(), reader.getCols()) : safe[0];
+    }
+
+    /** Getters **/
+    public int getRows(){
+        return this.maxRow;
+    }
+
+    public int getCols(){
+        return this.maxCol;
+    }
+
+    public cType getCardType(int row, int col){
+        int cell = cell(row, col);
+        if(cell >= PILLAR_CELL){
+            return PILLAR;
+        }else if(cell == LASER_CELL){
+            return LASER;
+        }else if(lit(row, col)){
+            return BEAM;
+        }
+        return NONE;
+    }
+
+    public int getnLasers(int row, int col){
+        int cell = cell(row, col);
+        return cell >= PILLAR_CELL ? cell - PILLAR_CELL : 0;
+    }
+
+    /**
+     * @return the number of tiles currently allocated.
+     */
+    public int getTiles(){
+        return this.tileRows.size();
+    }
+
+    /**
+     * Places a laser at the inputted coordinates. Beams are implied by the laser so only LASER is stored.
+     * @param row Row being placed
+     * @param col Column being placed
+     * @param type the type of card being placed.
+     * @return true if a laser was placed.
+     */
+    public boolean add(int row, int col, cType type){
+        if(row < 0 || col < 0 || row >= maxRow || col >= maxCol){
+            listener.rejected(row, col, SafeListener.Problem.BAD_COORDINATES);
+            return false;
+        }else if(type != LASER){
+            return false;
+        }
+        int cell = cell(row, col);
+        if(cell >= PILLAR_CELL){
+            listener.rejected(row, col, SafeListener.Problem.PILLAR_THERE);
+            return false;
+        }else if(cell == LASER_CELL){
+            listener.rejected(row, col, SafeListener.Problem.LASER_THERE);
+            return false;
+        }
+        setCell(row, col, LASER_CELL);
+        listener.laserAdded(row, col);
+        return true;
+    }
+
+    /**
+     * Add for Pillar
+     * @param row Row being added
+     * @param col Column being added
+     * @param type Type needs to be pillar
+     * @param numLasers Number of lasers for
+     * @return true if the pillar was placed.
+     */
+    public boolean add(int row, int col, cType type, int numLasers){
+        if(row < 0 || col < 0 || row >= maxRow || col >= maxCol){
+            listener.rejected(row, col, SafeListener.Problem.BAD_COORDINATES);
+            return false;
+        }else if(type == PILLAR && getCardType(row, col) == NONE){
+            setPillar(row, col, numLasers);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove a laser at a position (row, col)
+     * @param row Row being removed
+     * @param col Column being removed
+     * @return true if a laser was removed.
+     */
+    public boolean remove(int row, int col){
+        if(row < 0 || col < 0 || row >= maxRow || col >= maxCol){
+            listener.rejected(row, col, SafeListener.Problem.BAD_COORDINATES);
+            return false;
+        }else if(cell(row, col) != LASER_CELL){
+            listener.rejected(row, col, SafeListener.Problem.NO_LASER);
+            return false;
+        }
+        setCell(row, col, (byte)0);
+        listener.laserRemoved(row, col);
+        return true;
+    }
+
+    public void setListener(SafeListener listener){
+        this.listener = listener;
+    }
+
+    private void setPillar(int row, int col, int numLasers){
+        setCell(row, col, (byte)(PILLAR_CELL + numLasers));
+    }
+
+    /**
+     * @return the tile value of a cell, 0 if its tile was never allocated.
+     */
+    private int cell(int row, int col){
+        Tile tile = tileRows.get(tileKey(row, col));
+        return tile == null ? 0 : tile.cells[((row & (TILE - 1)) << TILE_BITS) | (col & (TILE - 1))];
+    }
+
+    /**
+     * Writes a cell, allocating its tile on the first write and dropping it once it only holds floor again.
+     */
+    private void setCell(int row, int col, byte value){
+        long key = tileKey(row, col);
+        Tile tile = tileRows.get(key);
+        if(tile == null){
+            if(value == 0){
+                return;
+            }
+            tile = new Tile(row & -TILE, col & -TILE);
+            link(tileRows, key, tile, false);
+            link(tileCols, tileKey(col, row), tile, true);
+        }
+        int i = ((row & (TILE - 1)) << TILE_BITS) | (col & (TILE - 1));
+        if(tile.cells[i] == 0 && value != 0){
+            tile.used++;
+        }else if(tile.cells[i] != 0 && value == 0){
+            tile.used--;
+        }
+        tile.flip(row, col, tile.cells[i]);
+        tile.flip(row, col, value);
+        tile.cells[i] = value;
+        if(tile.used == 0){
+            unlink(tileRows, key, tile, false);
+            unlink(tileCols, tileKey(col, row), tile, true);
+        }
+    }
+
+    /**
+     * Adds a new tile to one of the sorted maps, between the tiles that exist either side of it on its line.
+     * @param column true for tileCols, false for tileRows
+     */
+    private static void link(TreeMap<Long, Tile> tiles, long key, Tile tile, boolean column){
+        Map.Entry<Long, Tile> lower = tiles.lowerEntry(key);
+        Map.Entry<Long, Tile> higher = tiles.higherEntry(key);
+        Tile before = lower != null && (lower.getKey() >>> 32) == (key >>> 32) ? lower.getValue() : null;
+        Tile after = higher != null && (higher.getKey() >>> 32) == (key >>> 32) ? higher.getValue() : null;
+        setNeighbours(before, tile, column);
+        setNeighbours(tile, after, column);
+        tiles.put(key, tile);
+    }
+
+    private static void unlink(TreeMap<Long, Tile> tiles, long key, Tile tile, boolean column){
+        setNeighbours(tile.before(column), tile.after(column), column);
+        tiles.remove(key);
+    }
+
+    /**
+     * Makes two tiles, either of which may be null, neighbours along a row or down a column.
+     */
+    private static void setNeighbours(Tile before, Tile after, boolean column){
+        if(before != null){
+            if(column){
+                before.down = after;
+            }else{
+                before.right = after;
+            }
+        }
+        if(after != null){
+            if(column){
+                after.up = before;
+            }else{
+                after.left = before;
+            }
+        }
+    }
+
+    /**
+     * @return the key of the tile holding (line, position) in tileRows, or of (position, line) in tileCols.
+     */
+    private static long tileKey(int line, int position){
+        return ((long)(line >>> TILE_BITS) << 32) | (position >>> TILE_BITS);
+    }
+
+    /**
+     * Finds the first pillar or laser at or after a position of a row or column, visiting only the tiles that
+     * exist along it.
+     * @param column true to walk a column, false to walk a row
+     * @param line the row or column walked
+     * @param from the first position looked at
+     * @param limit the position to stop at (exclusive)
+     * @param pillar true to look for a pillar, false to look for a laser
+     * @return the position found, or limit if there is none.
+     */
+    private int next(boolean column, int line, int from, int limit, boolean pillar){
+        Map.Entry<Long, Tile> entry = (column ? tileCols : tileRows).ceilingEntry(tileKey(line, from));
+        if(entry == null || (entry.getKey() >>> 32) != (line >>> TILE_BITS)){
+            return limit;
+        }
+        int mask = Tile.mask(column, pillar, line);
+        for(Tile tile = entry.getValue(); tile != null; tile = tile.after(column)){
+            int start = tile.start(column);
+            if(start >= limit){
+                return limit;
+            }
+            int bits = tile.masks[mask] & (-1 << Math.max(from - start, 0));
+            if(bits != 0){
+                return Math.min(limit, start + Integer.numberOfTrailingZeros(bits));
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Finds the last pillar or laser at or before a position of a row or column, visiting only the tiles that
+     * exist along it.
+     * @param column true to walk a column, false to walk a row
+     * @param line the row or column walked
+     * @param from the last position looked at
+     * @param pillar true to look for a pillar, false to look for a laser
+     * @return the position found, or -1 if there is none.
+     */
+    private int previous(boolean column, int line, int from, boolean pillar){
+        if(from < 0){
+            return -1;
+        }
+        Map.Entry<Long, Tile> entry = (column ? tileCols : tileRows).floorEntry(tileKey(line, from));
+        if(entry == null || (entry.getKey() >>> 32) != (line >>> TILE_BITS)){
+            return -1;
+        }
+        int mask = Tile.mask(column, pillar, line);
+        for(Tile tile = entry.getValue(); tile != null; tile = tile.before(column)){
+            int start = tile.start(column);
+            int bits = tile.masks[mask] & (-1 >>> (31 - Math.min(from - start, TILE - 1)));
+            if(bits != 0){
+                return start + 31 - Integer.numberOfLeadingZeros(bits);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the lasers inside a run of one row or column, stopping at 2 since only 0, 1 or many matter.
+     * @param column true for a run of a column, false for a run of a row
+     * @param line the row or column
+     * @param from the first position of the run
+     * @param to the position after the run
+     * @return 0, 1 or 2 for two or more.
+     */
+    private int lasersBetween(boolean column, int line, int from, int to){
+        int first = next(column, line, from, to, false);
+        if(first >= to){
+            return 0;
+        }
+        return next(column, line, first + 1, to, false) >= to ? 1 : 2;
+    }
+
+    /**
+     * Counts the lasers in the run of a line between the pillars (or walls) either side of a position.
+     * @param column true for a column, false for a row
+     * @param line the row or column
+     * @param position the position on the line, which is no pillar
+     * @param length the length of the line
+     * @return 0, 1 or 2 for two or more.
+     */
+    private int segmentLasers(boolean column, int line, int position, int length){
+        int from = previous(column, line, position, true) + 1;
+        return lasersBetween(column, line, from, next(column, line, position, length, true));
+    }
+
+    private int colSegmentLasers(int row, int col){
+        return segmentLasers(true, col, row, maxRow);
+    }
+
+    /**
+     * @param row the row of a floor cell
+     * @param col the column of a floor cell
+     * @return true if a laser shines on the cell.
+     */
+    private boolean lit(int row, int col){
+        return segmentLasers(false, row, col, maxCol) > 0 || colSegmentLasers(row, col) > 0;
+    }
+
+    /**
+     * @param row the row of a pillar
+     * @param col the column of a pillar
+     * @return the lasers in the cardinal directions around the pillar.
+     */
+    private int adjacentLasers(int row, int col){
+        int count = 0;
+        // Order: Bottom, Top, Right, Left.
+        if(row + 1 < maxRow && cell(row + 1, col) == LASER_CELL){
+            count++;
+        }if(row - 1 >= 0 && cell(row - 1, col) == LASER_CELL){
+            count++;
+        }if(col + 1 < maxCol && cell(row, col + 1) == LASER_CELL){
+            count++;
+        }if(col - 1 >= 0 && cell(row, col - 1) == LASER_CELL){
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * verifies if the current safe layout is valid or not, with the same rules and the same first failing cell
+     * as Safe.verify. Each row is walked one segment at a time: a segment holding a laser is lit as a whole, so
+     * only its lasers are checked, and only the cells of segments left dark by their row need a column lookup.
+     * @return true if the safe is valid, false if the safe is not valid.
+     */
+    public boolean verify(){
+        for(int row = 0; row < maxRow; row++){
+            int from = 0;
+            while(from <= maxCol){
+                int pillar = next(false, row, from, maxCol, true);
+                int bad = checkSegment(row, from, pillar);
+                if(bad >= 0){
+                    listener.verifyFailed(row, bad);
+                    return false;
+                }
+                if(pillar == maxCol){
+                    break;
+                }
+                int need = getnLasers(row, pillar);
+                // Any lasers >4 means it can have any amount of lasers.
+                if(need <= 4 && adjacentLasers(row, pillar) != need){
+                    listener.verifyFailed(row, pillar);
+                    return false;
+                }
+                from = pillar + 1;
+            }
+        }
+        listener.verified();
+        return true;
+    }
+
+    /**
+     * Checks the floor cells of one row segment.
+     * @param row the row
+     * @param from the first column of the segment
+     * @param to the column after the segment
+     * @return the first column that fails, or -1 if the whole segment is fine.
+     */
+    private int checkSegment(int row, int from, int to){
+        int inRow = lasersBetween(false, row, from, to);
+        if(inRow > 1){
+            // The first laser already sees the second one.
+            return next(false, row, from, to, false);
+        }else if(inRow == 1){
+            int col = next(false, row, from, to, false);
+            return colSegmentLasers(row, col) == 1 ? -1 : col;
+        }
+        for(int col = from; col < to; col++){
+            if(colSegmentLasers(row, col) == 0){
+                return col;
+            }
+        }
+        return -1;
+    }
+}
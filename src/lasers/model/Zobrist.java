@@ -0,0 +1,31 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: Zobrist.java
+ * @language: Java 14
+ *
+ * Zobrist keys for hashing a set of lasers. Each cell has a fixed random 64 bit key and the hash of a board is
+ * the xor of the keys of its lasers, so placing or removing a laser updates the hash with a single xor, and two
+ * boards with the same lasers have the same hash however they got there.
+ * The keys are mixed from the cell index on demand rather than kept in a table, so every safe of the same width
+ * shares them without holding an array per safe.
+ */
+
+public final class Zobrist {
+
+    private Zobrist(){
+    }
+
+    /**
+     * @param cell the row major index of a cell (row * cols + col)
+     * @return the random key of a laser on that cell.
+     */
+    public static long key(int cell){
+        // SplitMix64 finalizer over the golden ratio sequence.
+        long z = (cell + 1) * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
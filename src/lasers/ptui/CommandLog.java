@@ -0,0 +1,400 @@
+package lasers.ptui;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: CommandLog.java
+ * @language: Java 14
+ *
+ * An input file compiled once into a compact stream of opcodes, so it can be replayed on any number of safes
+ * without splitting and pattern matching its lines again. Every line is checked the same way LasersPTUI.output
+ * checks it, and a line that output would reject is kept as an opcode for its error message. A run of adds is
+ * stored as one opcode followed by its cells, so a quiet replay can place the whole run with one addAll.
+ * Compiled files are cached by path and are only compiled again when the file changes on disk.
+ */
+
+import lasers.metrics.Histogram;
+import lasers.metrics.Metrics;
+import lasers.model.Card;
+import lasers.model.Safe;
+import lasers.solver.Hint;
+import lasers.solver.HintEngine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+public final class CommandLog {
+    //opcodes; ADDS is followed by a count and that many row, column pairs, REMOVE by one row and column.
+    static final int ADDS = 0;
+    static final int REMOVE = 1;
+    static final int DISPLAY = 2;
+    static final int HELP = 3;
+    static final int HINT = 4;
+    static final int QUIT = 5;
+    static final int UNDO = 6;
+    static final int VERIFY = 7;
+    static final int REDO = 8;
+    static final int BAD_PARAMETERS = 9;    // an add or remove without exactly two coordinates
+    static final int BAD_COORDINATES = 10;  // an add or remove whose coordinates are not numbers
+    static final int UNKNOWN = 11;          // any other command
+
+    //time spent on each opcode, named after the command it came from. Bad adds and removes share one, and every
+    //unknown command shares another, so typed garbage can never add a metric.
+    private static final Histogram[] TIMES = {
+            Metrics.histogram("ptui.a"), Metrics.histogram("ptui.r"), Metrics.histogram("ptui.d"),
+            Metrics.histogram("ptui.h"), Metrics.histogram("ptui.i"), Metrics.histogram("ptui.q"),
+            Metrics.histogram("ptui.u"), Metrics.histogram("ptui.v"), Metrics.histogram("ptui.y"),
+            Metrics.histogram("ptui.invalid"), Metrics.histogram("ptui.invalid"), Metrics.histogram("ptui.unknown")};
+
+    //compiled logs by canonical path, least recently loaded first. Once they hold more than CACHE_INTS opcode ints
+    //the oldest are dropped, so replaying thousands of files in one run keeps only the recent ones.
+    private static final int CACHE_INTS = 1 << 22;
+    private static final LinkedHashMap<String, CommandLog> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedInts;     // opcode ints held by CACHE, guarded by CACHE
+
+    private final int[] code;           // the opcode stream
+    private final long modified;        // last modified time of the file it was compiled from
+    private final long length;          // length of the file it was compiled from
+
+    private CommandLog(int[] code, long modified, long length){
+        this.code = code;
+        this.modified = modified;
+        this.length = length;
+    }
+
+    /**
+     * Grows the opcode stream while a log is compiled.
+     */
+    private static final class Compiler {
+        int[] code = new int[64];
+        int size;
+        int run = -1;       // where the count of the add run being built is, -1 if the last command was no add
+
+        void emit(int value){
+            if(size == code.length){
+                code = Arrays.copyOf(code, size * 2);
+            }
+            code[size++] = value;
+        }
+
+        void op(int op){
+            run = -1;
+            emit(op);
+        }
+
+        /**
+         * Compiles one command, with the same checks as LasersPTUI.output.
+         * @param cmd the command split by the whitespaces into an array
+         */
+        void compile(String[] cmd){
+            switch (cmd[0]){
+                case "a":
+                case "r":
+                    //check if the coordinates are numbers.
+                    if(cmd.length != 3){
+                        op(BAD_PARAMETERS);
+                        break;
+                    }
+                    int row = coordinate(cmd[1]);
+                    int col = coordinate(cmd[2]);
+                    if(row < 0 || col < 0){
+                        op(BAD_COORDINATES);
+                    }else if(cmd[0].equals("r")){
+                        op(REMOVE);
+                        emit(row);
+                        emit(col);
+                    }else{
+                        if(run < 0){
+                            op(ADDS);
+                            run = size;
+                            emit(0);
+                        }
+                        code[run]++;
+                        emit(row);
+                        emit(col);
+                    }
+                    break;
+                case "d":
+                    op(DISPLAY);
+                    break;
+                case "h":
+                    op(HELP);
+                    break;
+                case "i":
+                    op(HINT);
+                    break;
+                case "q":
+                    op(QUIT);
+                    break;
+                case "u":
+                    op(UNDO);
+                    break;
+                case "v":
+                    op(VERIFY);
+                    break;
+                case "y":
+                    op(REDO);
+                    break;
+                default:
+                    op(UNKNOWN);
+            }
+        }
+
+        /**
+         * @param arg a coordinate as typed
+         * @return its value, or -1 if it is not a number that fits in an int.
+         */
+        private static int coordinate(String arg){
+            if(arg.isEmpty() || arg.length() > 10){
+                return -1;
+            }
+            long value = 0;
+            for(int i = 0; i < arg.length(); i++){
+                char digit = arg.charAt(i);
+                if(digit < '0' || digit > '9'){
+                    return -1;
+                }
+                value = value * 10 + (digit - '0');
+            }
+            return value > Integer.MAX_VALUE ? -1 : (int)value;
+        }
+    }
+
+    /**
+     * Compiles a single typed command.
+     * @param cmd the command split by the whitespaces into an array
+     * @return a log holding just that command.
+     */
+    public static CommandLog of(String[] cmd){
+        Compiler compiler = new Compiler();
+        compiler.compile(cmd);
+        return new CommandLog(Arrays.copyOf(compiler.code, compiler.size), 0, 0);
+    }
+
+    /**
+     * Compiles an input file, one command per line.
+     * @param inputFile path of the input file
+     * @return the compiled log.
+     * @throws IOException if the file can not be read.
+     */
+    public static CommandLog compile(String inputFile) throws IOException {
+        File file = new File(inputFile);
+        long modified = file.lastModified();
+        long length = file.length();
+        Compiler compiler = new Compiler();
+        try(BufferedReader input = new BufferedReader(new FileReader(file))){
+            String line = input.readLine();
+            while(line != null){
+                compiler.compile(line.split(" "));
+                line = input.readLine();
+            }
+        }
+        return new CommandLog(Arrays.copyOf(compiler.code, compiler.size), modified, length);
+    }
+
+    /**
+     * Compiles an input file, or hands back the log it was compiled into before if the file has not changed and
+     * the log is still cached. The file is read with the cache unlocked, so threads loading other files never
+     * wait on it.
+     * @param inputFile path of the input file
+     * @return the compiled log.
+     * @throws IOException if the file can not be read.
+     */
+    public static CommandLog load(String inputFile) throws IOException {
+        File file = new File(inputFile);
+        String key = file.getCanonicalPath();
+        CommandLog log;
+        synchronized(CACHE){
+            log = CACHE.get(key);
+        }
+        if(log != null && log.modified == file.lastModified() && log.length == file.length()){
+            return log;
+        }
+        log = compile(inputFile);
+        synchronized(CACHE){
+            CommandLog old = CACHE.put(key, log);
+            cachedInts += log.code.length - (old == null ? 0 : old.code.length);
+            Iterator<CommandLog> oldest = CACHE.values().iterator();
+            while(cachedInts > CACHE_INTS && oldest.hasNext()){
+                cachedInts -= oldest.next().code.length;
+                oldest.remove();
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Replays the log the way LasersPTUI.output runs each of its commands, printing the same replies. The
+     * safe's own messages go to its listener, which the caller points at the same place.
+     * @param safe the safe the commands affect
+     * @param out where the replies are printed.
+     * @return false if the log ended with a quit, in which case the commands after it were not run.
+     */
+    public boolean replay(Safe safe, PrintStream out){
+        int pc = 0;
+        while(pc < code.length){
+            long start = Metrics.start();
+            int op = code[pc++];
+            switch (op){
+                case ADDS:
+                    int end = pc + 1 + 2 * code[pc];
+                    for(pc++; pc < end; pc += 2){
+                        safe.add(code[pc], code[pc + 1], Card.cType.LASER);
+                        safe.printSafe(out);
+                        //every add in the run is timed on its own, as if it had been typed.
+                        if(Metrics.ENABLED){
+                            Metrics.since(TIMES[ADDS], start);
+                            start = Metrics.start();
+                        }
+                    }
+                    continue;
+                case REMOVE:
+                    safe.remove(code[pc], code[pc + 1]);
+                    safe.printSafe(out);
+                    pc += 2;
+                    break;
+                case DISPLAY:
+                    safe.printSafe(out);
+                    break;
+                case HELP:
+                    LasersPTUI.printCMDS(out);
+                    break;
+                case HINT:
+                    Hint hint = HintEngine.hint(safe);
+                    out.println(hint == null ? "No forced move, try a guess!" : hint);
+                    break;
+                case QUIT:
+                    out.println("Goodbye!");
+                    if(Metrics.ENABLED){
+                        Metrics.since(TIMES[QUIT], start);
+                    }
+                    return false;
+                case UNDO:
+                    if(safe.undo()){
+                        safe.printSafe(out);
+                    }else{
+                        out.println("Nothing to undo!");
+                    }
+                    break;
+                case VERIFY:
+                    out.println("Verifying...");
+                    safe.verify();
+                    break;
+                case REDO:
+                    if(safe.redo()){
+                        safe.printSafe(out);
+                    }else{
+                        out.println("Nothing to redo!");
+                    }
+                    break;
+                case BAD_PARAMETERS:
+                    out.println("Invalid parameters!");
+                    break;
+                case BAD_COORDINATES:
+                    out.println("Error. Invalid coordinate inputs!");
+                    break;
+                default:
+                    out.println("Error! Unknown Command!");
+            }
+            if(Metrics.ENABLED){
+                Metrics.since(TIMES[op], start);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replays the log without printing anything, as LasersBatch does, up to the first quit. It ends on the same
+     * board as replay. A run of adds long enough to light most of the safe is placed with one addAll instead of
+     * one beam scan per laser, journaled in command order so an undo after it takes away the last add first.
+     * @param safe the safe the commands affect
+     * @return the commands that were valid and ran.
+     */
+    public int apply(Safe safe){
+        int applied = 0;
+        int pc = 0;
+        while(pc < code.length){
+            switch (code[pc++]){
+                case ADDS:
+                    int[] cells = new int[code[pc]];
+                    int n = 0;
+                    int end = pc + 1 + 2 * code[pc];
+                    for(pc++; pc < end; pc += 2){
+                        if(code[pc] < safe.getRows() && code[pc + 1] < safe.getCols()){
+                            cells[n++] = code[pc] * safe.getCols() + code[pc + 1];
+                        }else{
+                            //an add off this safe is rejected by add itself, in its place in the run.
+                            applied += place(safe, cells, n);
+                            n = 0;
+                            safe.add(code[pc], code[pc + 1], Card.cType.LASER);
+                        }
+                    }
+                    applied += place(safe, cells, n);
+                    break;
+                case REMOVE:
+                    if(safe.remove(code[pc], code[pc + 1])){
+                        applied++;
+                    }
+                    pc += 2;
+                    break;
+                case UNDO:
+                    if(safe.undo()){
+                        applied++;
+                    }
+                    break;
+                case REDO:
+                    if(safe.redo()){
+                        applied++;
+                    }
+                    break;
+                case VERIFY:
+                    safe.verify();
+                    applied++;
+                    break;
+                case DISPLAY:
+                case HELP:
+                case HINT:
+                    // Nothing to show in batch mode.
+                    applied++;
+                    break;
+                case QUIT:
+                    return applied;
+                default:
+                    break;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Places the first n cells of a run of adds. A single add casts beams over at most one row and one column,
+     * while addAll sweeps the whole safe, so the run only goes to addAll when its adds would cover more cells
+     * than the safe holds.
+     * @return the lasers placed.
+     */
+    private static int place(Safe safe, int[] cells, int n){
+        int cols = safe.getCols();
+        if((long)n * (safe.getRows() + cols) > (long)safe.getRows() * cols){
+            return safe.addAll(n == cells.length ? cells : Arrays.copyOf(cells, n));
+        }
+        int placed = 0;
+        for(int i = 0; i < n; i++){
+            if(safe.add(cells[i] / cols, cells[i] % cols, Card.cType.LASER)){
+                placed++;
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * @return the number of ints in the opcode stream.
+     */
+    public int size(){
+        return code.length;
+    }
+}
@@ -0,0 +1,167 @@
+package lasers.ptui;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: LasersBatch.java
+ * @language: Java 14
+ *
+ * A headless way to replay many recorded sessions in one JVM. Every safe file is paired with an input file,
+ * the pairs are replayed on a thread pool with the model kept quiet, and one result line is printed per pair,
+ * in pair order, as soon as it and every pair before it are done.
+ */
+
+import lasers.model.Safe;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+public class LasersBatch {
+
+    /**
+     * The outcome of replaying one safe and input pair.
+     */
+    static class Result {
+        final String safeFile;      // The safe that was loaded
+        final String inputFile;     // The commands replayed on it
+        final boolean verified;     // Whether the safe verified after the replay
+        final long micros;          // Time taken to load and replay
+        final int applied;          // Commands that were valid and ran
+        final String error;         // Why the pair could not be replayed, null if it was
+
+        Result(String safeFile, String inputFile, boolean verified, long micros, int applied, String error){
+            this.safeFile = safeFile;
+            this.inputFile = inputFile;
+            this.verified = verified;
+            this.micros = micros;
+            this.applied = applied;
+            this.error = error;
+        }
+
+        @Override
+        public String toString(){
+            if(error != null){
+                return safeFile + " " + inputFile + " error " + error;
+            }
+            return safeFile + " " + inputFile + " " + (verified ? "verified" : "not-verified") + " "
+                    + micros + "us " + applied + " commands";
+        }
+    }
+
+    /**
+     * Loads a safe and replays an input file on it.
+     * @param safeFile path of the safe file
+     * @param inputFile path of the input file
+     * @return the outcome.
+     */
+    static Result replay(String safeFile, String inputFile){
+        long start = System.nanoTime();
+        try{
+            Safe safe = Safe.load(safeFile);
+            //the input is compiled once and shared by every safe it is replayed on.
+            int applied = CommandLog.load(inputFile).apply(safe);
+            boolean verified = safe.verify();
+            return new Result(safeFile, inputFile, verified, (System.nanoTime() - start) / 1000, applied, null);
+        }catch(IOException | RuntimeException e){
+            return new Result(safeFile, inputFile, false, (System.nanoTime() - start) / 1000, 0, e.toString());
+        }
+    }
+
+    /**
+     * Finds the pairs to replay. A directory pairs every safe*.txt with the input*.txt of the same suffix, for
+     * example data/safe1.txt with data/input1.txt. A manifest lists one "safe-file input-file" pair per line,
+     * relative to the manifest's own directory.
+     * @param source a directory or a manifest file
+     * @return the pairs as {safe, input}.
+     * @throws IOException if the manifest can not be read.
+     */
+    static List<String[]> pairs(File source) throws IOException {
+        List<String[]> pairs = new ArrayList<>();
+        if(source.isDirectory()){
+            String[] names = source.list();
+            Arrays.sort(names);
+            for(String name : names){
+                if(name.startsWith("safe") && name.endsWith(".txt")){
+                    File input = new File(source, "input" + name.substring("safe".length()));
+                    if(input.isFile()){
+                        pairs.add(new String[]{new File(source, name).getPath(), input.getPath()});
+                    }
+                }
+            }
+        }else{
+            File base = source.getAbsoluteFile().getParentFile();
+            try(BufferedReader manifest = new BufferedReader(new FileReader(source))){
+                String line = manifest.readLine();
+                while(line != null){
+                    String[] pair = line.trim().split("\\s+");
+                    if(pair.length == 2){
+                        pairs.add(new String[]{resolve(base, pair[0]), resolve(base, pair[1])});
+                    }
+                    line = manifest.readLine();
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private static String resolve(File base, String path){
+        File file = new File(path);
+        return file.isAbsolute() ? path : new File(base, path).getPath();
+    }
+
+    /**
+     * Replays every pair on a pool of threads, handing each result on as soon as it and the results before it
+     * are in, rather than once the whole batch is done.
+     * @param pairs the {safe, input} pairs
+     * @param threads the number of threads to use
+     * @param results told about every result, in the same order as the pairs
+     * @throws Exception if a replay is interrupted.
+     */
+    static void replayAll(List<String[]> pairs, int threads, Consumer<Result> results) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try{
+            List<Future<Result>> futures = new ArrayList<>();
+            for(String[] pair : pairs){
+                futures.add(pool.submit(() -> replay(pair[0], pair[1])));
+            }
+            //drain in pair order; a result that finishes early waits in its future until those before it are out.
+            for(int i = 0; i < futures.size(); i++){
+                results.accept(futures.get(i).get());
+                futures.set(i, null);
+            }
+        }finally{
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * The main method; replays a directory or manifest of safe and input pairs.
+     * @param args the directory or manifest, and optionally the number of threads.
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1 || args.length > 2){
+            System.out.println("Usage: java LasersBatch directory|manifest [threads]");
+            return;
+        }
+        int threads = args.length == 2 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        List<String[]> pairs = pairs(new File(args[0]));
+        long start = System.nanoTime();
+        int[] verified = new int[1];
+        replayAll(pairs, threads, result -> {
+            System.out.println(result);
+            if(result.verified){
+                verified[0]++;
+            }
+        });
+        System.out.println(pairs.size() + " sessions, " + verified[0] + " verified, "
+                + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+}
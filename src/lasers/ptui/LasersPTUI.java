@@ -8,7 +8,7 @@ package lasers.ptui;
  * the user interface that takes in the safe file and creates a Safe object for the user to manipulate
  */
 
-import lasers.model.Card;
+import lasers.model.ConsoleListener;
 import lasers.model.Safe;
 
 import java.io.*;
@@ -20,12 +20,23 @@ public class LasersPTUI {
      * a simple print method that displays the commands available to the user, and shows their definition and usage.
      */
     public static void printCMDS(){
-        System.out.println("a|add r c: Add laser to (r,c)\n" +
+        printCMDS(System.out);
+    }
+
+    /**
+     * Prints the commands somewhere other than the console.
+     * @param out where the commands are printed.
+     */
+    public static void printCMDS(PrintStream out){
+        out.println("a|add r c: Add laser to (r,c)\n" +
                 "d|display: Display safe\n" +
                 "h|help: Print this help message\n" +
+                "i|hint: Suggest a move that is forced by the lasers so far\n" +
                 "q|quit: Exit program\n" +
                 "r|remove r c: Remove laser from (r,c)\n" +
-                "v|verify: Verify safe correctness");
+                "u|undo: Undo the last add or remove\n" +
+                "v|verify: Verify safe correctness\n" +
+                "y|redo: Redo the last undone move");
     }
 
     /**
@@ -33,53 +44,24 @@ public class LasersPTUI {
      * or reject the command if it is invalid.
      * @param cmd a String of the user's command split by the whitespaces into an array
      * @param safe the safe object that the user's input will affect
+     * @return false if the command was a quit.
      */
-    public static void output(String[] cmd, Safe safe){
-        String command = cmd[0];
-        switch (command){
-            case "a":
-                //check if the coordinates are numbers.
-                if(cmd.length != 3){
-                    System.out.println("Invalid parameters!");
-                }
-                else if ((cmd[1].matches("[0-9]+")) && (cmd[2].matches("[0-9]+")) ){
-                    safe.add(Integer.parseInt(cmd[1]), Integer.parseInt(cmd[2]), Card.cType.LASER);
-                    safe.printSafe();
-                }
-                else{
-                    System.out.println("Error. Invalid coordinate inputs!");
-                }
-                break;
-            case "d":
-                safe.printSafe();
-                break;
-            case "h":
-                printCMDS();
-                break;
-            case "q":
-                System.out.println("Goodbye!");
-                System.exit(0);
-                break;
-            case "r":
-                //check if the coordinates are numbers.
-                if(cmd.length != 3){
-                    System.out.println("Invalid parameters!");
-                }
-                else if ((cmd[1].matches("[0-9]+")) && (cmd[2].matches("[0-9]+")) ){
-                    safe.remove(Integer.parseInt(cmd[1]), Integer.parseInt(cmd[2]));
-                    safe.printSafe();
-                }
-                else{
-                    System.out.println("Error. Invalid coordinate inputs!");
-                }
-                break;
-            case "v":
-                System.out.println("Verifying...");
-                safe.verify();
-                break;
-            default:
-                System.out.println("Error! Unknown Command!");
-        }
+    public static boolean output(String[] cmd, Safe safe){
+        return output(cmd, safe, System.out);
+    }
+
+    /**
+     * Runs a command the same way as output(cmd, safe), printing its replies somewhere other than the console.
+     * The safe's own messages go to its listener, which the caller points at the same place. "q" only says
+     * goodbye; it is up to the caller to stop.
+     * @param cmd a String of the user's command split by the whitespaces into an array
+     * @param safe the safe object that the user's input will affect
+     * @param out where the replies are printed.
+     * @return false if the command was a quit.
+     */
+    public static boolean output(String[] cmd, Safe safe, PrintStream out){
+        //timed per opcode inside the replay.
+        return CommandLog.of(cmd).replay(safe, out);
     }
 
     public static BufferedReader openFile(String fileName) throws FileNotFoundException {
@@ -97,22 +79,18 @@ public class LasersPTUI {
         if (args.length < 1 || args.length > 2) {
             System.out.println("Usage: java LasersPTUI safe-file [input]");
         } else {
-            //reads the first line of the safe file and creates a board of those dimensions
-            String[] DIMMs = openFile(args[0]).readLine().split(" ");
+            //reads the safe file's dimensions and pillars in one pass.
+            Safe safe = Safe.load("data//"+args[0]);
             printCMDS();
-            Safe safe = new Safe(Integer.parseInt(DIMMs[0]), Integer.parseInt(DIMMs[1]));
-
-            //makes the Safe's layout with the pillars based on the safe file input.
-            safe.makeSafe("data//"+args[0]);
+            //the model reports through a listener, so plug in the console to see the results.
+            safe.setListener(new ConsoleListener());
 
             //if there is an input file, it will be read and the commands will be executed in top-down order until
             //reaching the bottom line
             if(args.length == 2){
-                BufferedReader inputCMDS = openFile(args[1]);
-                String cmds = inputCMDS.readLine();
-                while (cmds != null){
-                    output(cmds.split(" "), safe);
-                    cmds = inputCMDS.readLine();
+                //the file is compiled once into opcodes, then replayed with no more parsing.
+                if(!CommandLog.load("data//"+args[1]).replay(safe, System.out)){
+                    System.exit(0);
                 }
             }
             safe.printSafe();
@@ -121,11 +99,10 @@ public class LasersPTUI {
             while(true){
                 System.out.print(">");
                 String[] cmd = kboard.nextLine().split(" ");
-                if(cmd[0].equals("q")){
-                    System.out.println("Goodbye!");
+                //output says goodbye and returns false once the user quits.
+                if(!output(cmd, safe)){
                     break;
                 }
-                output(cmd, safe);
             }
         }
     }
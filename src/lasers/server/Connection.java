@@ -0,0 +1,87 @@
+package lasers.server;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: Connection.java
+ * @language: Java 14
+ *
+ * The protocol side of one client connection, apart from how its bytes are moved: a virtual thread per
+ * connection and the selector loop both hand it one line at a time and send back whatever it replies.
+ */
+
+import lasers.model.ConsoleListener;
+import lasers.ptui.LasersPTUI;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+class Connection {
+    private final SafeServer server;        // Where sessions are joined and left
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();  // Replies not yet taken
+    private final PrintStream reply = new PrintStream(buffer, false);
+    private final ConsoleListener listener = new ConsoleListener(reply);      // Reports the safe's messages
+    private Session session;                // The joined session, null before the first join
+
+    Connection(SafeServer server){
+        this.server = server;
+    }
+
+    /**
+     * Runs one line from the client, leaving its reply and the end marker to be taken.
+     * @param line the line, without its line break
+     * @return false if the client quit, in which case the connection closes once the reply is sent.
+     */
+    boolean run(String line){
+        String[] cmd = line.trim().split(" ");
+        boolean open = true;
+        if(cmd[0].equals("q")){
+            reply.println("Goodbye!");
+            open = false;
+        }else if(cmd[0].equals("s")){
+            if(cmd.length != 3){
+                reply.println("Invalid parameters!");
+            }else{
+                close();
+                try{
+                    session = server.join(cmd[1], cmd[2]);
+                    reply.println("Joined " + session.id);
+                }catch(IOException e){
+                    reply.println("Could not load " + cmd[2] + ": " + e.getMessage());
+                }
+            }
+        }else if(session == null){
+            reply.println("Join a session first: s id safe-file");
+        }else{
+            session.lock.lock();
+            try{
+                session.safe.setListener(listener);
+                open = LasersPTUI.output(cmd, session.safe, reply);
+            }finally{
+                session.lock.unlock();
+            }
+        }
+        reply.println(SafeServer.END);
+        return open;
+    }
+
+    /**
+     * @return the replies since the last call, as bytes to send.
+     */
+    byte[] takeReply(){
+        reply.flush();
+        byte[] bytes = buffer.toByteArray();
+        buffer.reset();
+        return bytes;
+    }
+
+    /**
+     * Leaves the joined session, if there is one.
+     */
+    void close(){
+        if(session != null){
+            server.leave(session);
+            session = null;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package lasers.server;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: LoadClient.java
+ * @language: Java 14
+ *
+ * Drives a SafeServer with many connections at once. Every connection joins one of a number of sessions, sends
+ * random add, remove and verify commands, and times each reply. Once every connection is open they all start
+ * together, so the server really holds them all at the same time. Run from the project root:
+ *      java lasers.server.LoadClient [host port connections commands sessions safe-file]
+ */
+
+import lasers.metrics.Histogram;
+import lasers.model.Safe;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LoadClient {
+    private final String host;
+    private final int port;
+    private final int rows;         // Rows of the safe being played
+    private final int cols;         // Columns of the safe being played
+    private final Histogram latency = new Histogram();     // Nanoseconds per command
+    private final AtomicLong failed = new AtomicLong();    // Connections that broke off
+
+    LoadClient(String host, int port, int rows, int cols){
+        this.host = host;
+        this.port = port;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Sends a command and reads its reply up to the end marker.
+     * @return false if the server closed the connection.
+     */
+    private static boolean command(PrintWriter out, BufferedReader in, String command) throws IOException {
+        out.println(command);
+        out.flush();
+        String line = in.readLine();
+        while(line != null && !line.equals(SafeServer.END)){
+            line = in.readLine();
+        }
+        return line != null;
+    }
+
+    /**
+     * Plays one connection.
+     * @param id which connection this is
+     * @param commands the commands to send
+     * @param sessions the number of sessions shared between the connections
+     * @param safeFile the safe file the sessions load
+     * @param ready counted down once connected
+     * @param go waited on before the first command.
+     */
+    private void play(int id, int commands, int sessions, String safeFile, CountDownLatch ready, CountDownLatch go){
+        SplittableRandom random = new SplittableRandom(id);
+        try(Socket socket = new Socket(host, port);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            PrintWriter out = new PrintWriter(socket.getOutputStream())){
+            command(out, in, "s session" + (id % sessions) + " " + safeFile);
+            ready.countDown();
+            go.await();
+            for(int i = 0; i < commands; i++){
+                String command;
+                int pick = random.nextInt(10);
+                if(pick < 5){
+                    command = "a " + random.nextInt(rows) + " " + random.nextInt(cols);
+                }else if(pick < 9){
+                    command = "r " + random.nextInt(rows) + " " + random.nextInt(cols);
+                }else{
+                    command = "v";
+                }
+                long start = System.nanoTime();
+                if(!command(out, in, command)){
+                    failed.incrementAndGet();
+                    return;
+                }
+                latency.record(System.nanoTime() - start);
+            }
+            command(out, in, "q");
+        }catch(IOException | InterruptedException e){
+            failed.incrementAndGet();
+            ready.countDown();
+        }
+    }
+
+    /**
+     * Opens every connection, runs them together and prints the results.
+     */
+    void run(int connections, int commands, int sessions, String safeFile) throws Exception {
+        ExecutorService threads = Threads.perTask();
+        CountDownLatch ready = new CountDownLatch(connections);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for(int i = 0; i < connections; i++){
+            int id = i;
+            futures.add(threads.submit(() -> play(id, commands, sessions, safeFile, ready, go)));
+        }
+        ready.await();
+        System.out.println(connections + " connections open on " + Threads.kind());
+        long start = System.nanoTime();
+        go.countDown();
+        for(Future<?> future : futures){
+            future.get();
+        }
+        long nanos = System.nanoTime() - start;
+        threads.shutdown();
+        threads.awaitTermination(1, TimeUnit.MINUTES);
+        System.out.println(latency.getCount() + " commands in " + nanos / 1000000 + "ms, "
+                + (long)(latency.getCount() * 1e9 / nanos) + " commands/s, " + failed.get() + " connections failed");
+        System.out.println("latency us: p50=" + latency.getPercentile(50) / 1000 + " p99="
+                + latency.getPercentile(99) / 1000 + " max=" + latency.getMax() / 1000);
+    }
+
+    /**
+     * The main method; loads a server.
+     * @param args host, port, connections, commands per connection, sessions and the safe file, all optional.
+     */
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 4142;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int commands = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int sessions = args.length > 4 ? Integer.parseInt(args[4]) : connections;
+        String safeFile = args.length > 5 ? args[5] : "safe1.txt";
+        //the client loads the safe too, only to know its size.
+        Safe safe = Safe.load("data/" + safeFile);
+        new LoadClient(host, port, safe.getRows(), safe.getCols()).run(connections, commands, sessions, safeFile);
+    }
+}
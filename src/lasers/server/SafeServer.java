@@ -0,0 +1,225 @@
+package lasers.server;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SafeServer.java
+ * @language: Java 14
+ *
+ * Hosts many safes over a local TCP socket. Every connection gets its own virtual thread when the JVM has them,
+ * otherwise a single selector thread moves the bytes of them all and a small pool of workers runs their lines.
+ * Either way a connection speaks a line protocol made of
+ * the PTUI's commands:
+ *      s id safe-file    join session id, loading safe-file from the data directory if the session is new
+ *      a r c, r r c, d, v, u, y, h    the same as in the PTUI, run on the joined session's safe
+ *      q                 leave the session and close the connection
+ * Every reply is the text the PTUI would print, followed by a line holding a single '.'.
+ * A session lasts while at least one connection is in it.
+ */
+
+import lasers.model.Safe;
+
+import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+public class SafeServer {
+    /** Line that ends every reply. */
+    public static final String END = ".";
+    private static final int BACKLOG = 16384;   // Connections waiting to be accepted
+
+    private final File dataDir;                 // Where safe files are loaded from
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private volatile ServerSocket server;       // The listening socket, once serve has started
+    private volatile SelectorLoop loop;         // Serves every connection when there are no virtual threads
+
+    /**
+     * @param dataDir the directory safe files are loaded from.
+     */
+    public SafeServer(File dataDir){
+        this.dataDir = dataDir;
+    }
+
+    /**
+     * Listens on the loopback address and serves connections until the server is closed. With virtual threads
+     * every connection gets a new one; without them one thread serves every connection with a selector and a
+     * fixed pool of workers runs the lines, so a JVM without virtual threads still never holds a platform thread
+     * per connection.
+     * @param port the port to listen on, 0 for any free port
+     * @throws IOException if the port can not be opened.
+     */
+    public void serve(int port) throws IOException {
+        ExecutorService threads = Threads.virtualPerTask();
+        if(threads == null){
+            SelectorLoop loop = new SelectorLoop(this, port, BACKLOG);
+            this.loop = loop;
+            this.server = loop.socket();
+            loop.run();
+            return;
+        }
+        this.server = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        try{
+            while(!server.isClosed()){
+                Socket socket;
+                try{
+                    socket = server.accept();
+                }catch(IOException e){
+                    if(server.isClosed()){
+                        break;
+                    }
+                    throw e;
+                }
+                threads.execute(() -> handle(socket));
+            }
+        }finally{
+            threads.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the port being listened on, once serve has started.
+     */
+    public int getPort(){
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return the number of sessions being played.
+     */
+    public int getSessions(){
+        return sessions.size();
+    }
+
+    /**
+     * Stops accepting connections.
+     * @throws IOException if the socket can not be closed.
+     */
+    public void close() throws IOException {
+        server.close();
+        if(loop != null){
+            loop.wakeup();
+        }
+    }
+
+    /**
+     * Serves one connection on its own thread until it quits or drops.
+     * @param socket the connection.
+     */
+    private void handle(Socket socket){
+        Connection connection = new Connection(this);
+        try(socket;
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream())){
+            String line = in.readLine();
+            while(line != null){
+                boolean open = connection.run(line);
+                out.write(connection.takeReply());
+                out.flush();
+                if(!open){
+                    break;
+                }
+                line = in.readLine();
+            }
+        }catch(IOException e){
+            // The client went away, nothing to tell it.
+        }finally{
+            connection.close();
+        }
+    }
+
+    /**
+     * Joins a session, creating it if it does not exist or was just closed by its last member. A new session's
+     * safe is loaded before it is put in the map, so no other join waits on the disk; if two connections create
+     * the same session at once, the first one in wins and the other safe is dropped.
+     * @param id the session's name
+     * @param safeFile the safe file a new session loads, relative to the data directory
+     * @return the session, with this connection counted as a member.
+     * @throws IOException if the session is new and its safe can not be loaded.
+     */
+    Session join(String id, String safeFile) throws IOException {
+        while(true){
+            Session session = sessions.get(id);
+            if(session == null){
+                Session created = new Session(id, Safe.load(resolve(safeFile).toString()));
+                session = sessions.putIfAbsent(id, created);
+                if(session == null){
+                    session = created;
+                }
+            }
+            session.lock.lock();
+            try{
+                if(!session.closed){
+                    session.members++;
+                    return session;
+                }
+            }finally{
+                session.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Finds a safe file inside the data directory. Clients name the file, so anything that leads out of the
+     * directory, whether by "..", an absolute path or a symbolic link, is refused.
+     * @param safeFile the file as the client named it
+     * @return the real path of the file.
+     * @throws IOException if the file does not exist or is not inside the data directory.
+     */
+    Path resolve(String safeFile) throws IOException {
+        Path base = dataDir.toPath().toRealPath();
+        Path path = base.resolve(safeFile).normalize();
+        if(path.startsWith(base)){
+            try{
+                path = path.toRealPath();
+            }catch(NoSuchFileException e){
+                throw new FileNotFoundException("no such file");
+            }
+            if(path.startsWith(base)){
+                return path;
+            }
+        }
+        throw new IOException("not in the data directory");
+    }
+
+    /**
+     * Leaves a session, closing it when nobody is left.
+     * @param session the session being left.
+     */
+    void leave(Session session){
+        session.lock.lock();
+        try{
+            if(--session.members == 0){
+                session.closed = true;
+                sessions.remove(session.id, session);
+            }
+        }finally{
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * The main method; serves the safes in a data directory.
+     * @param args the port (default 4142) and the data directory (default data).
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length > 2){
+            System.out.println("Usage: java SafeServer [port] [data-directory]");
+            return;
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 4142;
+        SafeServer server = new SafeServer(new File(args.length > 1 ? args[1] : "data"));
+        System.out.println("Serving safes on port " + port + " with "
+                + (Threads.virtualThreadFactory() == null ? "a selector loop" : "virtual threads"));
+        server.serve(port);
+    }
+}
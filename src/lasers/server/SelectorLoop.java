@@ -0,0 +1,279 @@
+package lasers.server;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SelectorLoop.java
+ * @language: Java 14
+ *
+ * Serves every connection from one thread with a Selector, for JVMs without virtual threads. Sockets are
+ * non-blocking: bytes are gathered into lines as they arrive, and replies are written out as the socket takes
+ * them. The selector thread only moves bytes; complete lines are run on a small fixed pool of workers, since a
+ * join may load a safe from disk and a hint may search, and neither should stall every other connection.
+ * A connection is not read from while its lines run or its reply is still being written, so its lines run in
+ * order, one at a time, and a client that does not read its replies only holds up itself.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+final class SelectorLoop {
+    private static final int READ_SIZE = 4096;  // Bytes read from a socket at a time
+    private static final int MAX_LINE = 8192;   // Longest line a client may send before it is dropped
+
+    private final SafeServer server;            // Where the connections join their sessions
+    private final ServerSocketChannel channel;  // Accepts new connections
+    private final Selector selector;
+    private final ExecutorService workers;      // Runs the lines, at most one batch per connection at a time
+    private final Queue<SelectionKey> ran = new ConcurrentLinkedQueue<>();  // Connections whose lines have run
+
+    /**
+     * One connection's protocol state and buffers, attached to its key.
+     */
+    private static final class Client {
+        final Connection connection;
+        final ByteBuffer in = ByteBuffer.allocate(READ_SIZE);
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();    // The line read so far
+        ByteBuffer out;             // Reply bytes not yet written, null if there are none
+        boolean closing;            // Set once the client quit or hung up
+        // Guarded by the client: set while a worker runs its lines, and set when it is dropped meanwhile.
+        boolean running;
+        boolean dropped;
+        byte[] reply;               // Replies of the last lines run, handed from the worker to the selector
+
+        Client(Connection connection){
+            this.connection = connection;
+        }
+    }
+
+    /**
+     * Opens the listening socket.
+     * @param server the server the connections belong to
+     * @param port the port to listen on, 0 for any free port
+     * @param backlog connections waiting to be accepted
+     * @throws IOException if the port can not be opened.
+     */
+    SelectorLoop(SafeServer server, int port, int backlog) throws IOException {
+        this.server = server;
+        this.workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.selector = Selector.open();
+        this.channel = ServerSocketChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), backlog);
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * @return the listening socket, which stops the loop when it is closed.
+     */
+    ServerSocket socket(){
+        return channel.socket();
+    }
+
+    /**
+     * Wakes the loop up so it notices the listening socket was closed.
+     */
+    void wakeup(){
+        selector.wakeup();
+    }
+
+    /**
+     * Serves connections until the listening socket is closed, then drops every connection left.
+     * @throws IOException if the selector fails.
+     */
+    void run() throws IOException {
+        try{
+            while(channel.isOpen()){
+                selector.select();
+                for(SelectionKey key = ran.poll(); key != null; key = ran.poll()){
+                    try{
+                        if(key.isValid()){
+                            Client client = (Client) key.attachment();
+                            client.out = ByteBuffer.wrap(client.reply);
+                            client.reply = null;
+                            write(key);
+                        }
+                    }catch(IOException e){
+                        drop(key);
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()){
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try{
+                        if(!key.isValid()){
+                            continue;
+                        }
+                        if(key.isAcceptable()){
+                            accept();
+                        }else{
+                            if(key.isReadable()){
+                                read(key);
+                            }
+                            if(key.isValid() && key.isWritable()){
+                                write(key);
+                            }
+                        }
+                    }catch(IOException e){
+                        // The client went away, nothing to tell it.
+                        drop(key);
+                    }
+                }
+            }
+        }finally{
+            for(SelectionKey key : selector.keys()){
+                drop(key);
+            }
+            selector.close();
+            workers.shutdown();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel socket = channel.accept();
+        if(socket != null){
+            socket.configureBlocking(false);
+            socket.register(selector, SelectionKey.OP_READ, new Client(new Connection(server)));
+        }
+    }
+
+    /**
+     * Reads what has arrived and hands every complete line to a worker. A client whose line grows past MAX_LINE
+     * is dropped.
+     */
+    private void read(SelectionKey key) throws IOException {
+        Client client = (Client) key.attachment();
+        SocketChannel socket = (SocketChannel) key.channel();
+        List<String> lines = new ArrayList<>();
+        int n = socket.read(client.in);
+        client.in.flip();
+        while(client.in.hasRemaining()){
+            byte b = client.in.get();
+            if(b == '\n'){
+                lines.add(takeLine(client));
+            }else if(client.line.size() < MAX_LINE){
+                client.line.write(b);
+            }else{
+                drop(key);
+                return;
+            }
+        }
+        client.in.clear();
+        if(n < 0){
+            // A last line without a line break still counts, as it does for BufferedReader.readLine.
+            if(client.line.size() > 0){
+                lines.add(takeLine(client));
+            }
+            client.closing = true;
+        }
+        if(lines.isEmpty()){
+            write(key);
+            return;
+        }
+        //stop reading until the lines have run and their reply is written.
+        key.interestOps(0);
+        synchronized(client){
+            client.running = true;
+        }
+        workers.execute(() -> runLines(key, client, lines));
+    }
+
+    /**
+     * @return the line gathered so far, without a trailing carriage return.
+     */
+    private static String takeLine(Client client){
+        byte[] bytes = client.line.toByteArray();
+        client.line.reset();
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, length);
+    }
+
+    /**
+     * Runs a client's lines in order on a worker, up to the first that quits, then hands the reply back to the
+     * selector thread to write. If the client was dropped meanwhile, its connection is closed here instead.
+     */
+    private void runLines(SelectionKey key, Client client, List<String> lines){
+        try{
+            for(String line : lines){
+                if(!client.connection.run(line)){
+                    client.closing = true;
+                    break;
+                }
+            }
+            client.reply = client.connection.takeReply();
+        }finally{
+            if(client.reply == null){
+                // A line failed, so the connection is dropped rather than left waiting for its reply.
+                client.reply = new byte[0];
+                client.closing = true;
+            }
+            synchronized(client){
+                client.running = false;
+                if(client.dropped){
+                    client.connection.close();
+                    return;
+                }
+            }
+            ran.add(key);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Writes as much of the waiting reply as the socket takes. Reading resumes once it is all written, or the
+     * connection is dropped if the client is done.
+     */
+    private void write(SelectionKey key) throws IOException {
+        Client client = (Client) key.attachment();
+        if(client.out != null){
+            ((SocketChannel) key.channel()).write(client.out);
+            if(client.out.hasRemaining()){
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            client.out = null;
+        }
+        if(client.closing){
+            drop(key);
+        }else{
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Closes a connection and leaves its session, or leaves it once its worker is done if its lines are running.
+     */
+    private void drop(SelectionKey key){
+        key.cancel();
+        try{
+            key.channel().close();
+        }catch(IOException e){
+            // Closing anyway.
+        }
+        if(key.attachment() instanceof Client){
+            Client client = (Client) key.attachment();
+            synchronized(client){
+                if(client.running){
+                    client.dropped = true;
+                }else{
+                    client.connection.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package lasers.server;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: Session.java
+ * @language: Java 14
+ *
+ * One safe being played on the server, possibly by several connections at once. Each session has its own lock,
+ * so commands on different safes never wait for each other. A ReentrantLock is used rather than synchronized
+ * so a virtual thread waiting on it does not hold on to its carrier thread.
+ */
+
+import lasers.model.Safe;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+class Session {
+    final String id;            // The name clients join the session by
+    final Safe safe;            // The safe being played
+    final ReentrantLock lock = new ReentrantLock();
+    int members;                // Connections in the session, guarded by lock
+    boolean closed;             // Set once the last member leaves, guarded by lock
+
+    Session(String id, Safe safe){
+        this.id = id;
+        this.safe = safe;
+    }
+}
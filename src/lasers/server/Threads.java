@@ -0,0 +1,68 @@
+package lasers.server;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: Threads.java
+ * @language: Java 14
+ *
+ * Hands out a new thread per task, using virtual threads when the JVM has them. The project targets Java 14, so
+ * virtual threads (Java 21) and the thread per task executor are found by reflection. Virtual threads are never
+ * pooled: each task gets a fresh one and it ends with the task.
+ */
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+final class Threads {
+
+    private Threads(){
+    }
+
+    /**
+     * @return the factory for virtual threads, or null if this JVM does not have them.
+     */
+    static ThreadFactory virtualThreadFactory(){
+        try{
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        }catch(ReflectiveOperationException | RuntimeException e){
+            // Not there, or still a preview feature that is switched off.
+            return null;
+        }
+    }
+
+    /**
+     * @return an executor that starts a new virtual thread for every task, or null if this JVM does not have
+     * virtual threads.
+     */
+    static ExecutorService virtualPerTask(){
+        ThreadFactory factory = virtualThreadFactory();
+        if(factory == null){
+            return null;
+        }
+        try{
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        }catch(ReflectiveOperationException | RuntimeException e){
+            return null;
+        }
+    }
+
+    /**
+     * Used by the LoadClient, which only needs some thread per connection to drive a server with.
+     * @return an executor that runs every task on its own virtual thread, or on a cached pool of platform
+     * threads if this JVM does not have virtual threads.
+     */
+    static ExecutorService perTask(){
+        ExecutorService virtual = virtualPerTask();
+        return virtual == null ? Executors.newCachedThreadPool() : virtual;
+    }
+
+    /**
+     * @return a description of the threads perTask uses, for logging.
+     */
+    static String kind(){
+        return virtualThreadFactory() == null ? "platform threads" : "virtual threads";
+    }
+}
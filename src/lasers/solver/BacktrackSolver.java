@@ -0,0 +1,204 @@
+package lasers.solver;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: BacktrackSolver.java
+ * @language: Java 14
+ *
+ * Searches for a laser placement that verifies a safe. Each node of the search propagates the pillar counts and
+ * beam coverage first, so most dead branches are cut off before a laser is ever tried on them. Branches are
+ * undone through the state's trail rather than by removing lasers from a Safe.
+ */
+
+import lasers.metrics.Histogram;
+import lasers.metrics.Metrics;
+import lasers.model.Safe;
+import lasers.model.SafeView;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class BacktrackSolver implements Engine {
+    //search statistics of every run, only recorded when Metrics.ENABLED.
+    private static final Histogram SOLVE_TIME = Metrics.histogram("solver.time");
+    private static final Histogram NODES = Metrics.histogram("solver.nodes");
+    private static final Histogram NODE_RATE = Metrics.histogram("solver.nodesPerSecond");
+
+    long nodes;                 // Search nodes visited by the last run
+    long backtracks;            // Branches that failed in the last run
+    long solutions;             // Solutions found by the last run
+    int[] first;                // First solution found by the last run
+    boolean countAll;           // Keep searching after the first solution
+    AtomicBoolean stop;         // Set by another thread when the search should give up, null if never
+    long maxNodes;              // Nodes after which the search gives up, 0 for no limit
+
+    public BacktrackSolver(){
+    }
+
+    /**
+     * @param maxNodes search nodes after which every run gives up as if there were no solution, 0 for no limit.
+     */
+    public BacktrackSolver(long maxNodes){
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Finds one laser placement for a safe.
+     * @param safe a loaded safe; lasers already on it are ignored.
+     * @return the solution, or null if the safe can not be solved.
+     */
+    public Solution solve(SafeView safe){
+        return solve(new Puzzle(safe));
+    }
+
+    /**
+     * Finds one laser placement for a puzzle.
+     * @param puzzle the puzzle being solved
+     * @return the solution, or null if the puzzle can not be solved.
+     */
+    public Solution solve(Puzzle puzzle){
+        run(puzzle, false);
+        return first == null ? null : new Solution(puzzle.cols, first);
+    }
+
+    /**
+     * Counts every laser placement that verifies a puzzle.
+     * @param puzzle the puzzle being solved
+     * @return the number of distinct solutions.
+     */
+    public long countSolutions(Puzzle puzzle){
+        run(puzzle, true);
+        return solutions;
+    }
+
+    /** Getters for the statistics of the last run **/
+    public long getNodes(){
+        return this.nodes;
+    }
+
+    public long getBacktracks(){
+        return this.backtracks;
+    }
+
+    /**
+     * Resets the statistics and searches from an empty board.
+     * @param puzzle the puzzle being solved
+     * @param countAll true to count every solution instead of stopping at the first.
+     */
+    private void run(Puzzle puzzle, boolean countAll){
+        this.nodes = 0;
+        this.backtracks = 0;
+        this.solutions = 0;
+        this.first = null;
+        this.countAll = countAll;
+        long start = Metrics.start();
+        SolverState state = new SolverState(puzzle);
+        state.enqueueAll();
+        if(state.propagate()){
+            search(state);
+        }
+        recordRun(nodes, start);
+    }
+
+    /**
+     * Records the time and search rate of a run, when metrics are on.
+     * @param nodes the nodes the run visited
+     * @param start a System.nanoTime() taken when the run started.
+     */
+    static void recordRun(long nodes, long start){
+        if(Metrics.ENABLED){
+            long nanos = Math.max(1, System.nanoTime() - start);
+            SOLVE_TIME.record(nanos);
+            NODES.record(nodes);
+            NODE_RATE.record((long)(nodes * 1e9 / nanos));
+        }
+    }
+
+    /**
+     * Depth first search from a propagated state.
+     * @param state the current board
+     * @return true once the search should stop.
+     */
+    boolean search(SolverState state){
+        if(stop != null && stop.get()){
+            return true;
+        }
+        if(maxNodes > 0 && nodes >= maxNodes){
+            return true;
+        }
+        nodes++;
+        int cell = branchCell(state);
+        if(cell < 0){
+            // Everything is lit and every pillar is happy.
+            solutions++;
+            if(first == null){
+                first = state.lasers();
+            }
+            return !countAll;
+        }
+        // Try a laser on the cell first, then rule it out.
+        int mark = state.mark();
+        if(state.placeLaser(cell) && state.propagate()){
+            if(search(state)){
+                return true;
+            }
+        }else{
+            backtracks++;
+        }
+        state.undo(mark);
+        if(state.placeEmpty(cell) && state.propagate()){
+            if(search(state)){
+                return true;
+            }
+        }else{
+            backtracks++;
+        }
+        state.undo(mark);
+        return false;
+    }
+
+    /**
+     * Chooses the open cell to branch on. Pillars that still need lasers are settled first since they only have
+     * a few neighbours, then the darkest cell with the fewest candidates.
+     * @param state a propagated board
+     * @return the cell to branch on, or -1 if the board is solved.
+     */
+    static int branchCell(SolverState state){
+        int p = state.unsatisfiedPillar();
+        if(p >= 0){
+            for(int c : state.puzzle.pillarCells[p]){
+                if(state.cell[c] == SolverState.UNKNOWN){
+                    return c;
+                }
+            }
+        }
+        int dark = state.mostConstrainedDarkCell();
+        if(dark < 0){
+            return -1;
+        }
+        return state.onlyCandidate(dark);
+    }
+
+    /**
+     * Solves a safe file and prints the result.
+     * @param args the safe file to solve
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length != 1){
+            System.out.println("Usage: java BacktrackSolver safe-file");
+            return;
+        }
+        Safe safe = Safe.load(args[0]);
+        BacktrackSolver solver = new BacktrackSolver();
+        long start = System.nanoTime();
+        Solution solution = solver.solve(safe);
+        long time = (System.nanoTime() - start) / 1000;
+        if(solution == null){
+            System.out.println("No solution found (" + solver.getNodes() + " nodes, " + time + "us)");
+        }else{
+            System.out.println("Solved in " + time + "us, " + solver.getNodes() + " nodes: " + solution);
+            solution.applyTo(safe);
+            safe.printSafe();
+        }
+    }
+}
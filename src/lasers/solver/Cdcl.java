@@ -0,0 +1,472 @@
+package lasers.solver;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: Cdcl.java
+ * @language: Java 14
+ *
+ * A small conflict driven clause learning SAT solver. Clauses are propagated through two watched literals,
+ * every conflict is analysed back to its first unique implication point and learned as a new clause, and the
+ * next decision is the unassigned variable most involved in recent conflicts. The search restarts on the Luby
+ * sequence, keeping the phase each variable last had.
+ *
+ * Variable v has the literals 2v (true) and 2v + 1 (false), so a literal is negated by flipping its low bit.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class Cdcl {
+    private static final byte UNASSIGNED = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = -1;
+    private static final int RESTART_BASE = 100;   // Conflicts before the first restart
+    private static final double DECAY = 0.95;      // How fast old conflicts stop counting
+
+    private final int nVars;
+    private final List<int[]> clauses = new ArrayList<>();  // Original and learned clauses, never removed
+    private int[][] watches;        // Clauses watching each literal
+    private int[] nWatches;         // Used length of each watch list
+    private final byte[] value;     // Value of each literal
+    private final int[] level;      // Decision level each variable was assigned at
+    private final int[] reason;     // Clause that implied each variable, -1 for decisions
+    private final boolean[] phase;  // Value each variable had last, tried first when deciding on it
+    private final int[] trail;      // Assigned literals in order
+    private int trailSize;
+    private int propagated;         // Trail entries already propagated
+    private int[] levelStart = new int[16];     // Trail position where each decision level starts
+    private int nLevels;
+    private boolean unsat;          // An empty clause was added or derived
+
+    private final double[] activity;    // Conflict score of each variable
+    private double bump = 1;            // Current score added for taking part in a conflict
+    private final int[] heap;           // Unassigned variables, highest activity first
+    private final int[] heapIndex;      // Position of each variable in the heap, -1 if not in it
+    private int heapSize;
+    private final boolean[] seen;       // Scratch space for conflict analysis
+
+    private long decisions;     // Decisions made by the last solve
+    private long conflicts;     // Conflicts found by the last solve
+
+    /**
+     * @param nVars the number of variables.
+     */
+    Cdcl(int nVars){
+        this.nVars = nVars;
+        this.watches = new int[nVars * 2][];
+        this.nWatches = new int[nVars * 2];
+        this.value = new byte[nVars * 2];
+        this.level = new int[nVars];
+        this.reason = new int[nVars];
+        this.phase = new boolean[nVars];
+        this.trail = new int[nVars];
+        this.activity = new double[nVars];
+        this.heap = new int[nVars];
+        this.heapIndex = new int[nVars];
+        this.seen = new boolean[nVars];
+        for(int v = 0; v < nVars; v++){
+            heapIndex[v] = -1;
+            heapInsert(v);
+        }
+    }
+
+    static int pos(int var){
+        return var << 1;
+    }
+
+    static int neg(int var){
+        return (var << 1) | 1;
+    }
+
+    /**
+     * Adds a clause before solving. Literals already false are dropped, and satisfied clauses are ignored.
+     * @param lits the literals, any of which may be true.
+     */
+    void addClause(int... lits){
+        if(unsat){
+            return;
+        }
+        int[] clause = new int[lits.length];
+        int n = 0;
+        for(int lit : lits){
+            if(value[lit] == TRUE){
+                return;
+            }else if(value[lit] == UNASSIGNED){
+                boolean duplicate = false;
+                for(int i = 0; i < n; i++){
+                    if(clause[i] == lit){
+                        duplicate = true;
+                    }else if(clause[i] == (lit ^ 1)){
+                        // Always true.
+                        return;
+                    }
+                }
+                if(!duplicate){
+                    clause[n++] = lit;
+                }
+            }
+        }
+        if(n == 0){
+            unsat = true;
+        }else if(n == 1){
+            assign(clause[0], -1);
+            if(propagate() >= 0){
+                unsat = true;
+            }
+        }else{
+            attach(Arrays.copyOf(clause, n));
+        }
+    }
+
+    /**
+     * Searches for an assignment that satisfies every clause.
+     * @return true if one was found, readable through isTrue.
+     */
+    boolean solve(){
+        this.decisions = 0;
+        this.conflicts = 0;
+        if(unsat){
+            return false;
+        }
+        for(int restart = 1; ; restart++){
+            long limit = RESTART_BASE * luby(restart);
+            Boolean result = search(limit);
+            if(result != null){
+                return result;
+            }
+            cancelUntil(0);
+        }
+    }
+
+    /**
+     * @param var a variable
+     * @return true if the variable is true in the last assignment found.
+     */
+    boolean isTrue(int var){
+        return value[pos(var)] == TRUE;
+    }
+
+    /** Getters for the statistics of the last solve **/
+    long getDecisions(){
+        return this.decisions;
+    }
+
+    long getConflicts(){
+        return this.conflicts;
+    }
+
+    /**
+     * Searches until a result or a number of conflicts.
+     * @param limit conflicts allowed before giving up for a restart
+     * @return true or false once decided, null to restart.
+     */
+    private Boolean search(long limit){
+        long found = 0;
+        while(true){
+            int conflict = propagate();
+            if(conflict >= 0){
+                conflicts++;
+                found++;
+                if(nLevels == 0){
+                    unsat = true;
+                    return false;
+                }
+                int[] learnt = analyze(conflict);
+                cancelUntil(learnt.length == 1 ? 0 : level[learnt[1] >> 1]);
+                if(learnt.length == 1){
+                    assign(learnt[0], -1);
+                }else{
+                    assign(learnt[0], attach(learnt));
+                }
+                bump /= DECAY;
+            }else{
+                if(found >= limit){
+                    return null;
+                }
+                int var = pickBranchVariable();
+                if(var < 0){
+                    return true;
+                }
+                decisions++;
+                newLevel();
+                assign(phase[var] ? pos(var) : neg(var), -1);
+            }
+        }
+    }
+
+    /**
+     * Stores a clause of two or more literals and watches its first two.
+     * @return the index of the clause.
+     */
+    private int attach(int[] clause){
+        int index = clauses.size();
+        clauses.add(clause);
+        watch(clause[0], index);
+        watch(clause[1], index);
+        return index;
+    }
+
+    private void watch(int lit, int clause){
+        int[] list = watches[lit];
+        if(list == null){
+            list = watches[lit] = new int[4];
+        }else if(nWatches[lit] == list.length){
+            list = watches[lit] = Arrays.copyOf(list, list.length * 2);
+        }
+        list[nWatches[lit]++] = clause;
+    }
+
+    /**
+     * Makes a literal true at the current decision level.
+     * @param lit the literal
+     * @param from the clause that implied it, -1 for a decision or a unit.
+     */
+    private void assign(int lit, int from){
+        int var = lit >> 1;
+        value[lit] = TRUE;
+        value[lit ^ 1] = FALSE;
+        level[var] = nLevels;
+        reason[var] = from;
+        trail[trailSize++] = lit;
+    }
+
+    private void newLevel(){
+        if(nLevels == levelStart.length){
+            levelStart = Arrays.copyOf(levelStart, nLevels * 2);
+        }
+        levelStart[nLevels++] = trailSize;
+    }
+
+    /**
+     * Propagates every literal on the trail that has not been propagated yet.
+     * @return the index of a clause with every literal false, or -1 if there is none.
+     */
+    private int propagate(){
+        while(propagated < trailSize){
+            int falseLit = trail[propagated++] ^ 1;
+            int[] list = watches[falseLit];
+            int n = nWatches[falseLit];
+            int kept = 0;
+            for(int i = 0; i < n; i++){
+                int index = list[i];
+                int[] clause = clauses.get(index);
+                //keep the false literal in slot 1.
+                if(clause[0] == falseLit){
+                    clause[0] = clause[1];
+                    clause[1] = falseLit;
+                }
+                if(value[clause[0]] == TRUE){
+                    list[kept++] = index;
+                    continue;
+                }
+                //look for another literal to watch.
+                boolean moved = false;
+                for(int k = 2; k < clause.length; k++){
+                    if(value[clause[k]] != FALSE){
+                        clause[1] = clause[k];
+                        clause[k] = falseLit;
+                        watch(clause[1], index);
+                        moved = true;
+                        break;
+                    }
+                }
+                if(moved){
+                    continue;
+                }
+                list[kept++] = index;
+                if(value[clause[0]] == FALSE){
+                    //conflict, keep the rest of the watches and stop.
+                    for(i++; i < n; i++){
+                        list[kept++] = list[i];
+                    }
+                    nWatches[falseLit] = kept;
+                    propagated = trailSize;
+                    return index;
+                }
+                assign(clause[0], index);
+            }
+            nWatches[falseLit] = kept;
+        }
+        return -1;
+    }
+
+    /**
+     * Walks the implication graph back from a conflict to the first unique implication point.
+     * @param conflict the clause that became false
+     * @return the learned clause, its asserting literal first and a literal of the highest other level second.
+     */
+    private int[] analyze(int conflict){
+        int[] learnt = new int[8];
+        int n = 1;
+        int paths = 0;
+        int lit = -1;
+        int index = trailSize - 1;
+        do{
+            int[] clause = clauses.get(conflict);
+            for(int j = lit < 0 ? 0 : 1; j < clause.length; j++){
+                int q = clause[j];
+                int var = q >> 1;
+                if(!seen[var] && level[var] > 0){
+                    bumpActivity(var);
+                    seen[var] = true;
+                    if(level[var] >= nLevels){
+                        paths++;
+                    }else{
+                        if(n == learnt.length){
+                            learnt = Arrays.copyOf(learnt, n * 2);
+                        }
+                        learnt[n++] = q;
+                    }
+                }
+            }
+            while(!seen[trail[index] >> 1]){
+                index--;
+            }
+            lit = trail[index--];
+            conflict = reason[lit >> 1];
+            seen[lit >> 1] = false;
+            paths--;
+        }while(paths > 0);
+        learnt[0] = lit ^ 1;
+        learnt = Arrays.copyOf(learnt, n);
+
+        //put a literal of the highest remaining level second, it is where the search goes back to.
+        int best = 1;
+        for(int i = 1; i < n; i++){
+            seen[learnt[i] >> 1] = false;
+            if(level[learnt[i] >> 1] > level[learnt[best] >> 1]){
+                best = i;
+            }
+        }
+        if(n > 1){
+            int swap = learnt[1];
+            learnt[1] = learnt[best];
+            learnt[best] = swap;
+        }
+        return learnt;
+    }
+
+    /**
+     * Undoes every assignment above a decision level.
+     * @param target the level to go back to.
+     */
+    private void cancelUntil(int target){
+        if(nLevels <= target){
+            return;
+        }
+        for(int i = trailSize - 1; i >= levelStart[target]; i--){
+            int lit = trail[i];
+            int var = lit >> 1;
+            phase[var] = (lit & 1) == 0;
+            value[lit] = UNASSIGNED;
+            value[lit ^ 1] = UNASSIGNED;
+            if(heapIndex[var] < 0){
+                heapInsert(var);
+            }
+        }
+        trailSize = levelStart[target];
+        propagated = trailSize;
+        nLevels = target;
+    }
+
+    /**
+     * @return the unassigned variable with the highest activity, or -1 if every variable is assigned.
+     */
+    private int pickBranchVariable(){
+        while(heapSize > 0){
+            int var = heapRemoveMax();
+            if(value[pos(var)] == UNASSIGNED){
+                return var;
+            }
+        }
+        return -1;
+    }
+
+    private void bumpActivity(int var){
+        activity[var] += bump;
+        if(activity[var] > 1e100){
+            //scale everything down before the scores overflow.
+            for(int v = 0; v < nVars; v++){
+                activity[v] *= 1e-100;
+            }
+            bump *= 1e-100;
+        }
+        if(heapIndex[var] >= 0){
+            heapUp(heapIndex[var]);
+        }
+    }
+
+    /**
+     * @return the i'th term of the Luby sequence 1, 1, 2, 1, 1, 2, 4, ...
+     */
+    private static long luby(int i){
+        int k = 1;
+        while((1 << k) - 1 < i){
+            k++;
+        }
+        while(i != (1 << k) - 1){
+            i -= (1 << (k - 1)) - 1;
+            k = 1;
+            while((1 << k) - 1 < i){
+                k++;
+            }
+        }
+        return 1L << (k - 1);
+    }
+
+    /** Heap of variables ordered by activity **/
+    private void heapInsert(int var){
+        heap[heapSize] = var;
+        heapIndex[var] = heapSize;
+        heapUp(heapSize++);
+    }
+
+    private int heapRemoveMax(){
+        int top = heap[0];
+        heapIndex[top] = -1;
+        heapSize--;
+        if(heapSize > 0){
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            heapDown(0);
+        }
+        return top;
+    }
+
+    private void heapUp(int i){
+        int var = heap[i];
+        while(i > 0){
+            int parent = (i - 1) >> 1;
+            if(activity[heap[parent]] >= activity[var]){
+                break;
+            }
+            heap[i] = heap[parent];
+            heapIndex[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = var;
+        heapIndex[var] = i;
+    }
+
+    private void heapDown(int i){
+        int var = heap[i];
+        while(true){
+            int child = 2 * i + 1;
+            if(child >= heapSize){
+                break;
+            }
+            if(child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]){
+                child++;
+            }
+            if(activity[heap[child]] <= activity[var]){
+                break;
+            }
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = var;
+        heapIndex[var] = i;
+    }
+}
@@ -0,0 +1,253 @@
+package lasers.solver;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: DifficultyRater.java
+ * @language: Java 14
+ *
+ * Rates how hard safes are so a corpus can be sorted before it is served. Each safe gets a deduction pass,
+ * which only propagates the pillar and coverage rules the way a careful player would, and a search pass,
+ * which solves it with the BacktrackSolver. Safes are read straight into Puzzles, so no Safe is ever built,
+ * beamed or verified. Directories are streamed one chunk of safes at a time: a chunk is rated in parallel
+ * and written in order before the next one is read, so memory stays flat however big the corpus is.
+ */
+
+import lasers.model.SafeView;
+import lasers.model.SafeReader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class DifficultyRater {
+    private static final int CHUNK = 4096;      // Safes read before a chunk is rated in parallel
+    private static final long MAX_NODES = 1 << 18;  // Search nodes after which a safe is rated as it stands
+
+    //weights of each statistic in the score; every one is taken as log2(1 + count).
+    private static final double FORCED_WEIGHT = 1;      // Long chains of deductions take a while
+    private static final double BRANCH_WEIGHT = 4;      // Every guess makes a safe harder
+    private static final double BACKTRACK_WEIGHT = 8;   // Wrong guesses most of all
+
+    /**
+     * The statistics and score of one safe.
+     */
+    public static class Rating {
+        private final long forced;      // Cells the deduction pass settled
+        private final long open;        // Floor cells left open once deduction got stuck
+        private final long branches;    // Branch points the search needed
+        private final long backtracks;  // Branches that failed during the search
+        private final boolean solvable; // Whether the search found a solution
+        private final boolean capped;   // Whether the search gave up at MAX_NODES
+
+        Rating(long forced, long open, long branches, long backtracks, boolean solvable, boolean capped){
+            this.forced = forced;
+            this.open = open;
+            this.branches = branches;
+            this.backtracks = backtracks;
+            this.solvable = solvable;
+            this.capped = capped;
+        }
+
+        /** Getters **/
+        public long getForced(){
+            return this.forced;
+        }
+
+        public long getOpen(){
+            return this.open;
+        }
+
+        public long getBranches(){
+            return this.branches;
+        }
+
+        public long getBacktracks(){
+            return this.backtracks;
+        }
+
+        public boolean isSolvable(){
+            return this.solvable;
+        }
+
+        public boolean isCapped(){
+            return this.capped;
+        }
+
+        /**
+         * @return the difficulty, 0 for a safe with nothing to do and higher for harder ones, or -1 if the safe can
+         * not be solved. A capped safe, which is neither known to be solvable nor not, scores what it cost before
+         * the search gave up, and is marked capped so it is not taken for a solved one.
+         */
+        public double getScore(){
+            if(!solvable && !capped){
+                return -1;
+            }
+            return FORCED_WEIGHT * log2(forced) + BRANCH_WEIGHT * log2(branches)
+                    + BACKTRACK_WEIGHT * log2(backtracks);
+        }
+
+        private static double log2(long count){
+            return Math.log1p(count) / Math.log(2);
+        }
+
+        /**
+         * @return the score followed by the statistics it came from.
+         */
+        @Override
+        public String toString(){
+            return String.format("%.2f forced %d open %d branches %d backtracks %d", getScore(), forced, open,
+                    branches, backtracks) + (capped ? " capped" : solvable ? "" : " unsolvable");
+        }
+    }
+
+    /**
+     * Rates a loaded safe; lasers already on it are ignored.
+     * @param safe the safe being rated
+     * @return its rating.
+     */
+    public static Rating rate(SafeView safe){
+        return rate(new Puzzle(safe));
+    }
+
+    /**
+     * Rates a puzzle with a deduction pass and a search pass.
+     * @param puzzle the puzzle being rated
+     * @return its rating.
+     */
+    public static Rating rate(Puzzle puzzle){
+        SolverState state = new SolverState(puzzle);
+        state.enqueueAll();
+        boolean consistent = state.propagate();
+        long open = 0;
+        for(byte cell : state.cell){
+            if(cell == SolverState.UNKNOWN){
+                open++;
+            }
+        }
+        if(!consistent){
+            return new Rating(state.forced, open, 0, 0, false, false);
+        }
+        BacktrackSolver solver = new BacktrackSolver();
+        solver.maxNodes = MAX_NODES;
+        boolean solvable = solver.solve(puzzle) != null;
+        boolean capped = !solvable && solver.getNodes() >= MAX_NODES;
+        // The node that finds the solution is a leaf, every other node branched.
+        long branches = solvable ? solver.getNodes() - 1 : solver.getNodes();
+        return new Rating(state.forced, open, branches, solver.getBacktracks(), solvable, capped);
+    }
+
+    /**
+     * Rates every safe in a file or directory, a chunk at a time, writing one line per safe in file order:
+     * "file index score forced n open n branches n backtracks n", ending in "capped" or "unsolvable" when the
+     * search gave up or found no solution. A file that is not a well formed SafeFile gets a "file error reason"
+     * line after the lines of the safes read from it before the error, and the rest of the corpus carries on.
+     * @param source a SafeFile, or a directory searched for .txt files
+     * @param out where the ratings are written
+     * @return the number of safes rated.
+     * @throws IOException if a file can not be read or the output can not be written.
+     */
+    public static long rateAll(File source, Writer out) throws IOException {
+        String[] names = new String[CHUNK];
+        int[] indices = new int[CHUNK];
+        Puzzle[] puzzles = new Puzzle[CHUNK];
+        String[] errors = new String[CHUNK];    // Why a file could not be read, in place of its next safe
+        int n = 0;
+        long total = 0;
+        for(File file : files(source)){
+            int index = 0;
+            try{
+                SafeReader reader = SafeReader.open(file.getPath());
+                while(reader.advance()){
+                    names[n] = file.getPath();
+                    indices[n] = index++;
+                    puzzles[n++] = Puzzle.fromGrid(reader.getRows(), reader.getCols(), reader.getGrid());
+                    if(n == CHUNK){
+                        total += rateChunk(names, indices, puzzles, errors, n, out);
+                        n = 0;
+                    }
+                }
+            }catch(IOException e){
+                // The safes read before the bad one are still rated with their chunk, and written before this.
+                names[n] = file.getPath();
+                errors[n++] = e.getMessage();
+                if(n == CHUNK){
+                    total += rateChunk(names, indices, puzzles, errors, n, out);
+                    n = 0;
+                }
+            }
+        }
+        total += rateChunk(names, indices, puzzles, errors, n, out);
+        out.flush();
+        return total;
+    }
+
+    /**
+     * Rates the first n entries of a chunk in parallel and writes their lines in order. An entry with an error
+     * has no puzzle and gets its error line instead.
+     * @return the number of puzzles rated.
+     */
+    private static int rateChunk(String[] names, int[] indices, Puzzle[] puzzles, String[] errors, int n,
+                                 Writer out) throws IOException {
+        String[] lines = IntStream.range(0, n).parallel()
+                .mapToObj(i -> errors[i] != null ? names[i] + " error " + errors[i] + "\n"
+                        : names[i] + " " + indices[i] + " " + rate(puzzles[i]) + "\n")
+                .toArray(String[]::new);
+        int rated = 0;
+        for(int i = 0; i < n; i++){
+            out.write(lines[i]);
+            if(errors[i] == null){
+                rated++;
+            }
+        }
+        // Let the rated puzzles go before the next chunk is read.
+        Arrays.fill(puzzles, 0, n, null);
+        Arrays.fill(errors, 0, n, null);
+        return rated;
+    }
+
+    /**
+     * @return the file itself, or every .txt file under a directory in name order.
+     */
+    private static List<File> files(File source){
+        List<File> files = new ArrayList<>();
+        if(!source.isDirectory()){
+            files.add(source);
+            return files;
+        }
+        File[] children = source.listFiles();
+        Arrays.sort(children);
+        for(File child : children){
+            if(child.isDirectory()){
+                files.addAll(files(child));
+            }else if(child.getName().endsWith(".txt")){
+                files.add(child);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Rates a file or directory of safes.
+     * @param args a SafeFile or directory, and optionally the file the ratings are written to.
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1 || args.length > 2){
+            System.out.println("Usage: java DifficultyRater safe-file|directory [output-file]");
+            return;
+        }
+        long start = System.nanoTime();
+        long rated;
+        try(Writer out = args.length > 1 ? new BufferedWriter(new FileWriter(args[1]))
+                : new BufferedWriter(new OutputStreamWriter(System.out))){
+            rated = rateAll(new File(args[0]), out);
+        }
+        System.err.println(rated + " safes rated in " + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+}
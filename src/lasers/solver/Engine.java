@@ -0,0 +1,76 @@
+package lasers.solver;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: Engine.java
+ * @language: Java 14
+ *
+ * A way of solving safes. The backtracking search is quick on open, lightly constrained safes, while the SAT
+ * engine learns from its conflicts and holds up on dense ones, so the engine can be picked per puzzle.
+ */
+
+import lasers.model.Card;
+import lasers.model.SafeBoard;
+import lasers.model.SafeView;
+
+public interface Engine {
+    /** Fraction of cells that are numbered pillars above which a safe counts as dense. */
+    double DENSE = 0.12;
+    /** Cells a dense safe needs before the SAT engine is picked; below this backtracking is still quicker. */
+    int LARGE = 64 * 64;
+
+    /**
+     * Finds one laser placement for a puzzle.
+     * @param puzzle the puzzle being solved
+     * @return the solution, or null if the puzzle can not be solved.
+     */
+    Solution solve(Puzzle puzzle);
+
+    /**
+     * @return the work done by the last solve, in the engine's own unit (search nodes or decisions).
+     */
+    long getNodes();
+
+    /**
+     * Finds one laser placement for a safe.
+     * @param safe a loaded safe; lasers already on it are ignored.
+     * @return the solution, or null if the safe can not be solved.
+     */
+    default Solution solve(SafeView safe){
+        return solve(new Puzzle(safe));
+    }
+
+    /**
+     * Solves a safe and puts the solution on it, replacing any lasers already there.
+     * @param safe the safe to solve
+     * @return true if the safe was solved, false if it has no solution and was left alone.
+     */
+    default boolean populate(SafeBoard safe){
+        Solution solution = solve(safe);
+        if(solution == null){
+            return false;
+        }
+        for(int row = 0; row < safe.getRows(); row++){
+            for(int col = 0; col < safe.getCols(); col++){
+                if(safe.getCardType(row, col) == Card.cType.LASER){
+                    safe.remove(row, col);
+                }
+            }
+        }
+        solution.applyTo(safe);
+        return true;
+    }
+
+    /**
+     * Picks an engine for a puzzle: SAT for large safes crowded with numbered pillars, backtracking otherwise.
+     * @param puzzle the puzzle about to be solved
+     * @return a new engine.
+     */
+    static Engine forPuzzle(Puzzle puzzle){
+        int size = puzzle.rows * puzzle.cols;
+        if(size >= LARGE && puzzle.pillars.length > DENSE * size){
+            return new SatEngine();
+        }
+        return new BacktrackSolver();
+    }
+}
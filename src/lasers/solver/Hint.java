@@ -0,0 +1,65 @@
+package lasers.solver;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: Hint.java
+ * @language: Java 14
+ *
+ * A move the HintEngine worked out for the player: a cell that must hold a laser, a cell that must stay
+ * empty, or a conflict that has to be undone before the safe can be solved.
+ */
+
+public class Hint {
+    /** What the hint tells the player. */
+    public enum Kind {LASER, EMPTY, CONFLICT}
+
+    private final Kind kind;        // What kind of hint this is
+    private final int row;          // Row of the cell the hint is about, -1 if it is about the whole safe
+    private final int col;          // Column of the cell the hint is about, -1 if it is about the whole safe
+    private final String reason;    // Which rule produced the hint
+
+    /**
+     * @param kind what kind of hint this is
+     * @param row row of the cell, -1 if none
+     * @param col column of the cell, -1 if none
+     * @param reason why the move is forced.
+     */
+    public Hint(Kind kind, int row, int col, String reason){
+        this.kind = kind;
+        this.row = row;
+        this.col = col;
+        this.reason = reason;
+    }
+
+    /** Getters **/
+    public Kind getKind(){
+        return this.kind;
+    }
+
+    public int getRow(){
+        return this.row;
+    }
+
+    public int getCol(){
+        return this.col;
+    }
+
+    public String getReason(){
+        return this.reason;
+    }
+
+    /**
+     * @return the hint as a line for the player.
+     */
+    @Override
+    public String toString(){
+        switch(kind){
+            case LASER:
+                return "Hint: a laser belongs at (" + row + ", " + col + "), " + reason;
+            case EMPTY:
+                return "Hint: (" + row + ", " + col + ") can not hold a laser, " + reason;
+            default:
+                return "Conflict: " + reason;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package lasers.solver;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: HintEngine.java
+ * @language: Java 14
+ *
+ * Finds the next move a player can make without guessing. The lasers already on the safe are loaded into a
+ * SolverState, then the same local rules the solvers propagate with are applied: lasers can not see each other,
+ * a pillar with all its lasers empties its other sides, a pillar short of lasers fills every open side, and a
+ * dark cell with one candidate left needs a laser there. No branching is done, so a hint costs a single pass
+ * over the safe and comes back in well under a millisecond on a 50x50 safe.
+ */
+
+import lasers.model.Card;
+import lasers.model.SafeView;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+public class HintEngine {
+    //segments of the safes hints were asked for, since building them costs more than the hint itself.
+    private static final Map<SafeView, Puzzle> PUZZLES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Works out a hint for the safe as the player has left it.
+     * @param safe a loaded safe with the player's lasers on it.
+     * @return a forced move or a conflict, or null if every remaining move needs a guess (or the safe is solved).
+     */
+    public static Hint hint(SafeView safe){
+        Puzzle puzzle = puzzle(safe);
+        SolverState state = new SolverState(puzzle);
+
+        //line of sight: the player's lasers must not see each other.
+        int cols = puzzle.cols;
+        for(int c = 0; c < puzzle.need.length; c++){
+            if(safe.getCardType(c / cols, c % cols) == Card.cType.LASER && !state.placeLaser(c)){
+                int other = state.rowLaser[puzzle.rowSeg[c]];
+                if(other < 0){
+                    other = state.colLaser[puzzle.colSeg[c]];
+                }
+                return conflict(puzzle, c, "the lasers at " + at(puzzle, other) + " and " + at(puzzle, c)
+                        + " can see each other");
+            }
+        }
+
+        //pillar counts, remembering the first saturated pillar in case nothing better turns up.
+        Hint empty = null;
+        for(int p = 0; p < puzzle.pillars.length; p++){
+            int need = puzzle.need[puzzle.pillars[p]];
+            int lasers = state.pillarLasers[p];
+            int open = state.pillarOpen[p];
+            if(lasers > need){
+                return conflict(puzzle, puzzle.pillars[p], "the pillar at " + at(puzzle, puzzle.pillars[p])
+                        + " has more than " + need + " lasers");
+            }
+            if(lasers + open < need){
+                return conflict(puzzle, puzzle.pillars[p], "the pillar at " + at(puzzle, puzzle.pillars[p])
+                        + " can no longer get " + need + " lasers");
+            }
+            if(open > 0 && lasers + open == need){
+                return move(puzzle, Hint.Kind.LASER, openSide(state, p), "the pillar at "
+                        + at(puzzle, puzzle.pillars[p]) + " needs a laser on every open side");
+            }
+            if(open > 0 && lasers == need && empty == null){
+                empty = move(puzzle, Hint.Kind.EMPTY, openSide(state, p), "the pillar at "
+                        + at(puzzle, puzzle.pillars[p]) + " already has its " + need + " lasers");
+            }
+        }
+
+        //dark cells with one way or no way left to light them.
+        for(int c = 0; c < puzzle.need.length; c++){
+            if(state.cell[c] != SolverState.PILLAR && !state.covered(c)){
+                int candidates = state.candidates(c);
+                if(candidates == 0){
+                    return conflict(puzzle, c, at(puzzle, c) + " can no longer be lit");
+                }
+                if(candidates == 1){
+                    return move(puzzle, Hint.Kind.LASER, state.onlyCandidate(c), "it is the only cell left that can"
+                            + " light " + at(puzzle, c));
+                }
+            }
+        }
+        if(empty != null){
+            return empty;
+        }
+
+        //chain the rules together; anything they settle was not visible one rule at a time.
+        byte[] before = state.cell.clone();
+        state.enqueueAll();
+        if(!state.propagate()){
+            return new Hint(Hint.Kind.CONFLICT, -1, -1, "the lasers placed so far can not lead to a solution");
+        }
+        for(int c = 0; c < before.length; c++){
+            if(before[c] == SolverState.UNKNOWN && state.cell[c] == SolverState.LASER){
+                return move(puzzle, Hint.Kind.LASER, c, "the pillars and beams around it leave no other way");
+            }
+        }
+        for(int c = 0; c < before.length; c++){
+            if(before[c] == SolverState.UNKNOWN && state.cell[c] == SolverState.EMPTY){
+                return move(puzzle, Hint.Kind.EMPTY, c, "a laser there would leave a pillar or cell unsatisfied");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the cached puzzle of a safe, rebuilding it if the safe's pillars have changed since.
+     * @param safe the safe being hinted
+     * @return its puzzle.
+     */
+    private static Puzzle puzzle(SafeView safe){
+        int[] need = Puzzle.needs(safe);
+        Puzzle puzzle = PUZZLES.get(safe);
+        if(puzzle == null || puzzle.cols != safe.getCols() || !Arrays.equals(puzzle.need, need)){
+            puzzle = new Puzzle(safe.getRows(), safe.getCols(), need);
+            PUZZLES.put(safe, puzzle);
+        }
+        return puzzle;
+    }
+
+    /**
+     * @return the first open side of a numbered pillar.
+     */
+    private static int openSide(SolverState state, int p){
+        for(int c : state.puzzle.pillarCells[p]){
+            if(state.cell[c] == SolverState.UNKNOWN){
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private static Hint move(Puzzle puzzle, Hint.Kind kind, int c, String reason){
+        return new Hint(kind, c / puzzle.cols, c % puzzle.cols, reason);
+    }
+
+    private static Hint conflict(Puzzle puzzle, int c, String reason){
+        return move(puzzle, Hint.Kind.CONFLICT, c, reason);
+    }
+
+    /**
+     * @return a cell as "(row, col)".
+     */
+    private static String at(Puzzle puzzle, int c){
+        return "(" + c / puzzle.cols + ", " + c % puzzle.cols + ")";
+    }
+}
@@ -0,0 +1,197 @@
+package lasers.solver;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: ParallelSolver.java
+ * @language: Java 14
+ *
+ * Runs the backtracking search on a ForkJoinPool. The top few levels of the search tree are split into tasks,
+ * each owning its own copy of the board, and below that every task searches its subtree with a plain
+ * BacktrackSolver. Idle workers steal the unsplit halves, so all cores stay busy on uneven trees.
+ */
+
+import lasers.metrics.Metrics;
+import lasers.model.SafeView;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ParallelSolver implements Engine {
+    private final ForkJoinPool pool;    // Pool the search runs on
+    private final int splitDepth;       // Levels of the tree that are split into tasks
+
+    private volatile long lastNodes;    // Nodes visited by the last run to finish
+
+    /**
+     * The state one run shares between its tasks, so runs on the same solver never see each other's.
+     */
+    private static final class Search {
+        final int splitDepth;                                   // Levels of the tree split into tasks
+        final boolean countAll;                                 // Count every solution instead of the first
+        final LongAdder nodes = new LongAdder();                // Nodes visited so far
+        final AtomicBoolean found = new AtomicBoolean();        // Set once a first solution is found
+        final AtomicReference<int[]> first = new AtomicReference<>();  // The first solution found
+
+        Search(int splitDepth, boolean countAll){
+            this.splitDepth = splitDepth;
+            this.countAll = countAll;
+        }
+    }
+
+    /**
+     * Creates a solver on the common pool, splitting deep enough to give every worker several tasks.
+     */
+    public ParallelSolver(){
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool the pool to run the search on.
+     */
+    public ParallelSolver(ForkJoinPool pool){
+        // 2^splitDepth tasks at most, about 16 per worker.
+        this(pool, 32 - Integer.numberOfLeadingZeros(pool.getParallelism()) + 4);
+    }
+
+    /**
+     * @param pool the pool to run the search on
+     * @param splitDepth how many levels of the search tree are split into separate tasks.
+     */
+    public ParallelSolver(ForkJoinPool pool, int splitDepth){
+        this.pool = pool;
+        this.splitDepth = splitDepth;
+    }
+
+    /**
+     * Finds one laser placement for a safe.
+     * @param safe a loaded safe; lasers already on it are ignored.
+     * @return the solution, or null if the safe can not be solved.
+     */
+    public Solution solve(SafeView safe){
+        return solve(new Puzzle(safe));
+    }
+
+    /**
+     * Finds one laser placement, cancelling every other task as soon as one is found.
+     * @param puzzle the puzzle being solved
+     * @return the solution, or null if the puzzle can not be solved.
+     */
+    public Solution solve(Puzzle puzzle){
+        Search search = new Search(splitDepth, false);
+        run(puzzle, search);
+        int[] lasers = search.first.get();
+        return lasers == null ? null : new Solution(puzzle.cols, lasers);
+    }
+
+    /**
+     * Counts every laser placement that verifies a puzzle.
+     * @param puzzle the puzzle being solved
+     * @return the number of distinct solutions.
+     */
+    public long countSolutions(Puzzle puzzle){
+        return run(puzzle, new Search(splitDepth, true));
+    }
+
+    /**
+     * @return the search nodes visited by the last run to finish, across all threads.
+     */
+    public long getNodes(){
+        return this.lastNodes;
+    }
+
+    /**
+     * Propagates the empty board and hands it to the pool.
+     * @param puzzle the puzzle being solved
+     * @param search the state of this run.
+     * @return the number of solutions found.
+     */
+    private long run(Puzzle puzzle, Search search){
+        long start = Metrics.start();
+        SolverState state = new SolverState(puzzle);
+        state.enqueueAll();
+        long solutions = state.propagate() ? pool.invoke(new SearchTask(search, state, 0)) : 0;
+        this.lastNodes = search.nodes.sum();
+        BacktrackSolver.recordRun(lastNodes, start);
+        return solutions;
+    }
+
+    /**
+     * Searches one subtree. Shallow tasks split on their branch cell, deeper ones search sequentially.
+     */
+    private static final class SearchTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;        // The run this task belongs to
+        private final SolverState state;    // This task's own propagated board
+        private final int depth;            // Depth of the board in the search tree
+
+        SearchTask(Search search, SolverState state, int depth){
+            this.search = search;
+            this.state = state;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute(){
+            if(search.found.get()){
+                return 0L;
+            }
+            if(depth >= search.splitDepth){
+                return searchHere();
+            }
+            search.nodes.increment();
+            int cell = BacktrackSolver.branchCell(state);
+            if(cell < 0){
+                return solved(state.lasers());
+            }
+            // Each side of the branch gets its own copy so the two tasks never share a board.
+            SolverState withLaser = new SolverState(state);
+            SolverState withoutLaser = state;
+            boolean laserOk = withLaser.placeLaser(cell) && withLaser.propagate();
+            boolean emptyOk = withoutLaser.placeEmpty(cell) && withoutLaser.propagate();
+            if(laserOk && emptyOk){
+                SearchTask right = new SearchTask(search, withoutLaser, depth + 1);
+                right.fork();
+                long left = new SearchTask(search, withLaser, depth + 1).compute();
+                return left + right.join();
+            }else if(laserOk){
+                return new SearchTask(search, withLaser, depth + 1).compute();
+            }else if(emptyOk){
+                return new SearchTask(search, withoutLaser, depth + 1).compute();
+            }
+            return 0L;
+        }
+
+        /**
+         * Searches the rest of this subtree on the current thread.
+         * @return the solutions found in it.
+         */
+        private long searchHere(){
+            BacktrackSolver solver = new BacktrackSolver();
+            solver.countAll = search.countAll;
+            solver.stop = search.countAll ? null : search.found;
+            solver.search(state);
+            search.nodes.add(solver.nodes);
+            if(solver.first != null){
+                solved(solver.first);
+            }
+            return solver.solutions;
+        }
+
+        /**
+         * Records a solution, and in first solution mode tells every other task to stop.
+         * @param lasers the solution
+         * @return the one solution found.
+         */
+        private long solved(int[] lasers){
+            search.first.compareAndSet(null, lasers);
+            if(!search.countAll){
+                search.found.set(true);
+            }
+            return 1L;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package lasers.solver;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: Puzzle.java
+ * @language: Java 14
+ *
+ * A read only description of a safe's pillars that the solvers search over.
+ * Every floor cell belongs to exactly one row segment and one column segment, a segment being the run of
+ * cells between two pillars (or a pillar and a wall). A laser lights up its whole row and column segment,
+ * so two lasers see each other exactly when they share a segment.
+ */
+
+import lasers.model.Card;
+import lasers.model.SafeView;
+
+public class Puzzle {
+    /** need value used for floor cells that are not pillars. */
+    public static final int FLOOR = -1;
+    /** need value used for 'X' pillars that accept any amount of lasers. */
+    public static final int ANY = 5;
+
+    final int rows;             // Rows in the safe
+    final int cols;             // Columns in the safe
+    final int[] need;           // Lasers each cell requires if it is a pillar, FLOOR otherwise
+    final int[] rowSeg;         // Row segment of each floor cell, -1 for pillars
+    final int[] colSeg;         // Column segment of each floor cell, -1 for pillars
+    final int[][] rowSegCells;  // Cells contained in each row segment
+    final int[][] colSegCells;  // Cells contained in each column segment
+    final int[] pillars;        // Cell index of every numbered pillar (0-4)
+    final int[][] pillarCells;  // Floor cells adjacent to each numbered pillar
+    final int[][] cellPillars;  // Numbered pillars (by position in pillars) adjacent to each floor cell
+
+    /**
+     * Builds the puzzle from the pillars of a loaded safe. Lasers and beams already on the safe are ignored.
+     * @param safe the safe to read the pillars from.
+     */
+    public Puzzle(SafeView safe){
+        this(safe.getRows(), safe.getCols(), needs(safe));
+    }
+
+    /**
+     * Builds the puzzle from a row major array of pillar requirements.
+     * @param rows rows in the safe
+     * @param cols columns in the safe
+     * @param need FLOOR for floor cells, 0-4 for numbered pillars and ANY for 'X' pillars.
+     */
+    public Puzzle(int rows, int cols, int[] need){
+        this.rows = rows;
+        this.cols = cols;
+        this.need = need;
+        int size = rows * cols;
+        this.rowSeg = new int[size];
+        this.colSeg = new int[size];
+
+        //number the row segments, starting a new one after every pillar and at every wall.
+        int nRowSegs = 0;
+        for(int row = 0; row < rows; row++){
+            boolean open = false;
+            for(int col = 0; col < cols; col++){
+                int cell = row * cols + col;
+                if(need[cell] != FLOOR){
+                    rowSeg[cell] = -1;
+                    open = false;
+                }else{
+                    if(!open){
+                        nRowSegs++;
+                        open = true;
+                    }
+                    rowSeg[cell] = nRowSegs - 1;
+                }
+            }
+        }
+        //same thing going down the columns.
+        int nColSegs = 0;
+        for(int col = 0; col < cols; col++){
+            boolean open = false;
+            for(int row = 0; row < rows; row++){
+                int cell = row * cols + col;
+                if(need[cell] != FLOOR){
+                    colSeg[cell] = -1;
+                    open = false;
+                }else{
+                    if(!open){
+                        nColSegs++;
+                        open = true;
+                    }
+                    colSeg[cell] = nColSegs - 1;
+                }
+            }
+        }
+        this.rowSegCells = group(rowSeg, nRowSegs);
+        this.colSegCells = group(colSeg, nColSegs);
+
+        //collect the numbered pillars and link them with their floor neighbours.
+        int nPillars = 0;
+        for(int cell = 0; cell < size; cell++){
+            if(need[cell] != FLOOR && need[cell] < ANY){
+                nPillars++;
+            }
+        }
+        this.pillars = new int[nPillars];
+        this.pillarCells = new int[nPillars][];
+        int[] pillarCount = new int[size];
+        int p = 0;
+        for(int cell = 0; cell < size; cell++){
+            if(need[cell] != FLOOR && need[cell] < ANY){
+                pillars[p] = cell;
+                pillarCells[p] = floorNeighbours(cell);
+                for(int neighbour : pillarCells[p]){
+                    pillarCount[neighbour]++;
+                }
+                p++;
+            }
+        }
+        this.cellPillars = new int[size][];
+        for(int cell = 0; cell < size; cell++){
+            cellPillars[cell] = new int[pillarCount[cell]];
+            pillarCount[cell] = 0;
+        }
+        for(p = 0; p < nPillars; p++){
+            for(int neighbour : pillarCells[p]){
+                cellPillars[neighbour][pillarCount[neighbour]++] = p;
+            }
+        }
+    }
+
+    /**
+     * Builds the puzzle straight from a grid read by the SafeReader, without making a Safe first.
+     * @param rows rows in the safe
+     * @param cols columns in the safe
+     * @param grid SafeReader.FLOOR or the amount of lasers each pillar needs ('X' is 10), row major
+     * @return the puzzle.
+     */
+    public static Puzzle fromGrid(int rows, int cols, byte[] grid){
+        int[] need = new int[grid.length];
+        for(int cell = 0; cell < grid.length; cell++){
+            need[cell] = grid[cell] < 0 ? FLOOR : Math.min(grid[cell], ANY);
+        }
+        return new Puzzle(rows, cols, need);
+    }
+
+    /**
+     * Reads the pillar requirements of every cell on a safe.
+     * @param safe the safe being read.
+     * @return a row major array of requirements.
+     */
+    static int[] needs(SafeView safe){
+        int rows = safe.getRows();
+        int cols = safe.getCols();
+        int[] need = new int[rows * cols];
+        for(int row = 0; row < rows; row++){
+            for(int col = 0; col < cols; col++){
+                if(safe.getCardType(row, col) == Card.cType.PILLAR){
+                    // Anything over 4 is an 'X' pillar.
+                    need[row * cols + col] = Math.min(safe.getnLasers(row, col), ANY);
+                }else{
+                    need[row * cols + col] = FLOOR;
+                }
+            }
+        }
+        return need;
+    }
+
+    /**
+     * Groups cells by the segment they belong to.
+     * @param seg the segment of each cell, -1 for none
+     * @param nSegs the number of segments
+     * @return for every segment, the cells inside it in index order.
+     */
+    private static int[][] group(int[] seg, int nSegs){
+        int[] count = new int[nSegs];
+        for(int s : seg){
+            if(s >= 0){
+                count[s]++;
+            }
+        }
+        int[][] cells = new int[nSegs][];
+        for(int s = 0; s < nSegs; s++){
+            cells[s] = new int[count[s]];
+            count[s] = 0;
+        }
+        for(int cell = 0; cell < seg.length; cell++){
+            if(seg[cell] >= 0){
+                cells[seg[cell]][count[seg[cell]]++] = cell;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Finds the floor cells in the cardinal directions around a cell.
+     * @param cell the cell in the middle
+     * @return the adjacent floor cells.
+     */
+    private int[] floorNeighbours(int cell){
+        int row = cell / cols;
+        int col = cell % cols;
+        int[] found = new int[4];
+        int n = 0;
+        // Order: Bottom, Top, Right, Left.
+        if(row + 1 < rows && need[cell + cols] == FLOOR){
+            found[n++] = cell + cols;
+        }if(row - 1 >= 0 && need[cell - cols] == FLOOR){
+            found[n++] = cell - cols;
+        }if(col + 1 < cols && need[cell + 1] == FLOOR){
+            found[n++] = cell + 1;
+        }if(col - 1 >= 0 && need[cell - 1] == FLOOR){
+            found[n++] = cell - 1;
+        }
+        int[] neighbours = new int[n];
+        System.arraycopy(found, 0, neighbours, 0, n);
+        return neighbours;
+    }
+
+    /** Getters **/
+    public int getRows(){
+        return this.rows;
+    }
+
+    public int getCols(){
+        return this.cols;
+    }
+
+    /**
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return FLOOR, the amount of lasers a numbered pillar needs, or ANY.
+     */
+    public int getNeed(int row, int col){
+        return this.need[row * cols + col];
+    }
+
+    /**
+     * @param cell a row major cell
+     * @return the row segment of a floor cell, -1 for a pillar.
+     */
+    public int getRowSegment(int cell){
+        return this.rowSeg[cell];
+    }
+
+    /**
+     * @param cell a row major cell
+     * @return the column segment of a floor cell, -1 for a pillar.
+     */
+    public int getColSegment(int cell){
+        return this.colSeg[cell];
+    }
+
+    public int getRowSegments(){
+        return this.rowSegCells.length;
+    }
+
+    public int getColSegments(){
+        return this.colSegCells.length;
+    }
+}
@@ -0,0 +1,188 @@
+package lasers.solver;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SatEngine.java
+ * @language: Java 14
+ *
+ * Solves a safe by translating it into clauses for the Cdcl solver. There is one variable per floor cell, true
+ * when the cell holds a laser, and the rules of the safe become:
+ *      - at most one laser in every row and column segment, so no two lasers see each other;
+ *      - every floor cell has a laser somewhere in its row or column segment, so it is lit;
+ *      - every numbered pillar has exactly its number of lasers among its floor neighbours.
+ */
+
+public class SatEngine implements Engine {
+    private static final int PAIRWISE = 6;  // Segments up to this long get a clause per pair of cells
+
+    private Cdcl sat;       // Solver used by the last run
+    private int nVars;      // Variables used by the last run, floor cells first then helpers
+
+    /**
+     * Finds one laser placement for a puzzle.
+     * @param puzzle the puzzle being solved
+     * @return the solution, or null if the puzzle can not be solved.
+     */
+    @Override
+    public Solution solve(Puzzle puzzle){
+        int size = puzzle.rows * puzzle.cols;
+        //number the floor cells.
+        int[] var = new int[size];
+        int[] cells = new int[size];
+        int nFloor = 0;
+        for(int c = 0; c < size; c++){
+            if(puzzle.need[c] == Puzzle.FLOOR){
+                cells[nFloor] = c;
+                var[c] = nFloor++;
+            }else{
+                var[c] = -1;
+            }
+        }
+        //the sequential at-most-one encoding needs a helper variable for each cell of a long segment.
+        this.nVars = nFloor;
+        int helpers = helpers(puzzle.rowSegCells) + helpers(puzzle.colSegCells);
+        this.sat = new Cdcl(nFloor + helpers);
+
+        atMostOne(puzzle.rowSegCells, var);
+        atMostOne(puzzle.colSegCells, var);
+        for(int c = 0; c < size; c++){
+            if(var[c] >= 0){
+                covered(puzzle, c, var);
+            }
+        }
+        for(int p = 0; p < puzzle.pillars.length; p++){
+            exactly(puzzle.need[puzzle.pillars[p]], puzzle.pillarCells[p], var);
+        }
+
+        if(!sat.solve()){
+            return null;
+        }
+        int count = 0;
+        for(int v = 0; v < nFloor; v++){
+            if(sat.isTrue(v)){
+                count++;
+            }
+        }
+        int[] lasers = new int[count];
+        count = 0;
+        for(int v = 0; v < nFloor; v++){
+            if(sat.isTrue(v)){
+                lasers[count++] = cells[v];
+            }
+        }
+        return new Solution(puzzle.cols, lasers);
+    }
+
+    /**
+     * @return the decisions made by the last solve.
+     */
+    @Override
+    public long getNodes(){
+        return sat == null ? 0 : sat.getDecisions();
+    }
+
+    /**
+     * @return the conflicts found by the last solve.
+     */
+    public long getConflicts(){
+        return sat == null ? 0 : sat.getConflicts();
+    }
+
+    /**
+     * @return the helper variables the segments need.
+     */
+    private static int helpers(int[][] segments){
+        int count = 0;
+        for(int[] segment : segments){
+            if(segment.length > PAIRWISE){
+                count += segment.length - 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Allows at most one laser in each segment. Short segments get a clause for every pair of cells; long ones
+     * use a chain of helpers where helper i means "a laser is somewhere in the first i + 1 cells".
+     */
+    private void atMostOne(int[][] segments, int[] var){
+        for(int[] segment : segments){
+            int n = segment.length;
+            if(n <= PAIRWISE){
+                for(int i = 0; i < n; i++){
+                    for(int j = i + 1; j < n; j++){
+                        sat.addClause(Cdcl.neg(var[segment[i]]), Cdcl.neg(var[segment[j]]));
+                    }
+                }
+            }else{
+                int first = nVars;
+                nVars += n - 1;
+                for(int i = 0; i < n; i++){
+                    int x = var[segment[i]];
+                    if(i < n - 1){
+                        sat.addClause(Cdcl.neg(x), Cdcl.pos(first + i));
+                    }
+                    if(i > 0){
+                        sat.addClause(Cdcl.neg(x), Cdcl.neg(first + i - 1));
+                        if(i < n - 1){
+                            sat.addClause(Cdcl.neg(first + i - 1), Cdcl.pos(first + i));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Requires a laser somewhere in the row or column segment of a floor cell.
+     */
+    private void covered(Puzzle puzzle, int c, int[] var){
+        int[] row = puzzle.rowSegCells[puzzle.rowSeg[c]];
+        int[] col = puzzle.colSegCells[puzzle.colSeg[c]];
+        int[] clause = new int[row.length + col.length - 1];
+        int n = 0;
+        for(int cell : row){
+            clause[n++] = Cdcl.pos(var[cell]);
+        }
+        for(int cell : col){
+            if(cell != c){
+                clause[n++] = Cdcl.pos(var[cell]);
+            }
+        }
+        sat.addClause(clause);
+    }
+
+    /**
+     * Requires exactly k lasers among a pillar's neighbours: no k + 1 of them may all be lasers, and no
+     * n - k + 1 of them may all be empty. A pillar has at most four neighbours, so the subsets are few.
+     */
+    private void exactly(int k, int[] neighbours, int[] var){
+        int n = neighbours.length;
+        if(k > n){
+            sat.addClause();
+            return;
+        }
+        for(int mask = 0; mask < (1 << n); mask++){
+            int bits = Integer.bitCount(mask);
+            if(bits != k + 1 && bits != n - k + 1){
+                continue;
+            }
+            int[] clause = new int[bits];
+            int i = 0;
+            for(int j = 0; j < n; j++){
+                if((mask & (1 << j)) != 0){
+                    int x = var[neighbours[j]];
+                    clause[i++] = bits == k + 1 ? Cdcl.neg(x) : Cdcl.pos(x);
+                }
+            }
+            sat.addClause(clause);
+            if(bits == k + 1 && bits == n - k + 1){
+                //the same subset size limits both ways.
+                for(i = 0; i < bits; i++){
+                    clause[i] ^= 1;
+                }
+                sat.addClause(clause);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package lasers.solver;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: Solution.java
+ * @language: Java 14
+ *
+ * The laser placement a solver found for a safe.
+ */
+
+import lasers.model.Card;
+import lasers.model.Safe;
+import lasers.model.SafeBoard;
+
+public class Solution {
+    private final int cols;     // Columns of the safe the solution belongs to
+    private final int[] lasers; // Row major index of every laser
+
+    /**
+     * @param cols columns of the safe the solution belongs to
+     * @param lasers row major index (row * cols + col) of every laser.
+     */
+    public Solution(int cols, int[] lasers){
+        this.cols = cols;
+        this.lasers = lasers;
+    }
+
+    /**
+     * @return the number of lasers in the solution.
+     */
+    public int size(){
+        return this.lasers.length;
+    }
+
+    /**
+     * @param i which laser
+     * @return the row of the i'th laser.
+     */
+    public int getRow(int i){
+        return this.lasers[i] / cols;
+    }
+
+    /**
+     * @param i which laser
+     * @return the column of the i'th laser.
+     */
+    public int getCol(int i){
+        return this.lasers[i] % cols;
+    }
+
+    /**
+     * Places every laser of the solution on a safe.
+     * @param safe a safe with the same pillars the solution was found for.
+     */
+    public void applyTo(SafeBoard safe){
+        if(safe instanceof Safe){
+            // One sweep over the safe for the whole solution, rather than a beam scan per laser.
+            boolean[] grid = new boolean[safe.getRows() * safe.getCols()];
+            for(int laser : lasers){
+                grid[laser] = true;
+            }
+            ((Safe)safe).addAll(grid);
+            return;
+        }
+        for(int i = 0; i < lasers.length; i++){
+            safe.add(getRow(i), getCol(i), Card.cType.LASER);
+        }
+    }
+
+    /**
+     * @return the lasers as "(row, col)" pairs.
+     */
+    @Override
+    public String toString(){
+        StringBuilder out = new StringBuilder();
+        for(int i = 0; i < lasers.length; i++){
+            if(i > 0){
+                out.append(' ');
+            }
+            out.append('(').append(getRow(i)).append(", ").append(getCol(i)).append(')');
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,426 @@
+package lasers.solver;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SolutionCache.java
+ * @language: Java 14
+ *
+ * Remembers the solutions of puzzles that have already been solved. Puzzles are keyed by their pillar layout
+ * in a canonical orientation: the smallest of its 8 rotations and mirror images. A rotated or mirrored copy of
+ * a cached puzzle therefore hits the same entry, and the cached lasers are turned back to fit it.
+ * The least recently used entries are dropped once the cache is full, or written to a spill directory if one
+ * was given, where later lookups (and later runs) can still find them. The spill directory is only ever read
+ * and written with the cache's lock released, so lookups never wait on another thread's disk I/O.
+ */
+
+import lasers.model.SafeView;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SolutionCache {
+    private static final int[] UNSOLVABLE = new int[0];   // Cached for puzzles that have no solution
+
+    private final int capacity;                 // Entries kept in memory
+    private final File spillDir;                // Where evicted entries are written, null to drop them
+    private final LinkedHashMap<Key, int[]> entries;    // Canonical lasers by key, in access order
+    private final List<Map.Entry<Key, int[]>> evicted = new ArrayList<>();  // Evicted, waiting to be spilled
+    private long hits;                          // Lookups answered from memory or disk
+    private long misses;                        // Lookups that had to be solved
+
+    /**
+     * The pillar layout of a puzzle in its canonical orientation.
+     */
+    private static final class Key {
+        final byte[] layout;    // Rows, columns, then every cell's need + 1
+        final long hash;        // 64 bit hash of the layout, also the name of its spill file
+
+        Key(byte[] layout){
+            this.layout = layout;
+            long h = 0xcbf29ce484222325L;
+            for(byte b : layout){
+                h = (h ^ (b & 0xff)) * 0x100000001b3L;
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object other){
+            return other instanceof Key && ((Key)other).hash == hash && Arrays.equals(((Key)other).layout, layout);
+        }
+
+        @Override
+        public int hashCode(){
+            return (int)(hash ^ (hash >>> 32));
+        }
+    }
+
+    /**
+     * @param capacity the number of solutions kept in memory.
+     */
+    public SolutionCache(int capacity){
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity the number of solutions kept in memory
+     * @param spillDir a directory evicted solutions are written to, or null to forget them.
+     */
+    public SolutionCache(int capacity, File spillDir){
+        this.capacity = capacity;
+        this.spillDir = spillDir;
+        if(spillDir != null){
+            spillDir.mkdirs();
+        }
+        this.entries = new LinkedHashMap<>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest){
+                if(size() <= SolutionCache.this.capacity){
+                    return false;
+                }
+                //only noted here, the caller writes it out once the lock is released.
+                if(SolutionCache.this.spillDir != null){
+                    evicted.add(Map.entry(eldest.getKey(), eldest.getValue()));
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Solves a safe, or returns its cached solution.
+     * @param safe a loaded safe; lasers already on it are ignored.
+     * @return the solution, or null if the safe can not be solved.
+     */
+    public Solution solve(SafeView safe){
+        return solve(new Puzzle(safe));
+    }
+
+    /**
+     * Solves a puzzle, or returns its cached solution.
+     * @param puzzle the puzzle being solved
+     * @return the solution, or null if the puzzle can not be solved.
+     */
+    public Solution solve(Puzzle puzzle){
+        int t = canonical(puzzle);
+        Key key = key(puzzle, t);
+        int[] lasers = lookup(key);
+        if(lasers == null){
+            Solution solution = new BacktrackSolver().solve(puzzle);
+            store(key, solution == null ? UNSOLVABLE : toCanonical(puzzle, t, solution));
+            return solution;
+        }
+        return lasers == UNSOLVABLE ? null : fromCanonical(puzzle, t, lasers);
+    }
+
+    /**
+     * Finds a cached solution without solving.
+     * @param puzzle the puzzle being looked up
+     * @return the solution, or null if the puzzle is not cached or has no solution.
+     */
+    public Solution get(Puzzle puzzle){
+        int t = canonical(puzzle);
+        int[] lasers = lookup(key(puzzle, t));
+        return lasers == null || lasers == UNSOLVABLE ? null : fromCanonical(puzzle, t, lasers);
+    }
+
+    /**
+     * Caches a solution found elsewhere.
+     * @param puzzle the puzzle that was solved
+     * @param solution its solution, or null if it has none.
+     */
+    public void put(Puzzle puzzle, Solution solution){
+        int t = canonical(puzzle);
+        store(key(puzzle, t), solution == null ? UNSOLVABLE : toCanonical(puzzle, t, solution));
+    }
+
+    /**
+     * Writes every entry still in memory to the spill directory, so the next run starts warm.
+     */
+    public void flush(){
+        List<Map.Entry<Key, int[]>> all;
+        synchronized(this){
+            all = new ArrayList<>(entries.entrySet());
+        }
+        spillAll(all);
+    }
+
+    /** Getters **/
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    public synchronized long getHits(){
+        return this.hits;
+    }
+
+    public synchronized long getMisses(){
+        return this.misses;
+    }
+
+    /**
+     * Looks a key up in memory, then on disk.
+     * @return the canonical lasers, UNSOLVABLE, or null on a miss.
+     */
+    private int[] lookup(Key key){
+        synchronized(this){
+            int[] lasers = entries.get(key);
+            if(lasers != null){
+                hits++;
+                return lasers;
+            }
+        }
+        int[] lasers = unspill(key);
+        if(lasers == null){
+            synchronized(this){
+                misses++;
+            }
+            return null;
+        }
+        List<Map.Entry<Key, int[]>> spilled;
+        synchronized(this){
+            hits++;
+            entries.put(key, lasers);
+            spilled = takeEvicted();
+        }
+        spillAll(spilled);
+        return lasers;
+    }
+
+    private void store(Key key, int[] lasers){
+        List<Map.Entry<Key, int[]>> spilled;
+        synchronized(this){
+            entries.put(key, lasers);
+            spilled = takeEvicted();
+        }
+        spillAll(spilled);
+    }
+
+    /**
+     * Hands over the entries evicted since the last call. Must be called holding the lock.
+     * @return the evicted entries, to be spilled once the lock is released.
+     */
+    private List<Map.Entry<Key, int[]>> takeEvicted(){
+        if(evicted.isEmpty()){
+            return List.of();
+        }
+        List<Map.Entry<Key, int[]>> taken = new ArrayList<>(evicted);
+        evicted.clear();
+        return taken;
+    }
+
+    private void spillAll(List<Map.Entry<Key, int[]>> spilled){
+        for(Map.Entry<Key, int[]> entry : spilled){
+            spill(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Moves a cell through one of the 8 symmetries. Symmetry t transposes the board if bit 0 is set, then
+     * flips it upside down if bit 1 is set, then flips it left to right if bit 2 is set.
+     * @param t the symmetry, 0 to 7
+     * @param rows rows of the puzzle before the symmetry
+     * @param cols columns of the puzzle before the symmetry
+     * @param cell the row major cell before the symmetry
+     * @return the row major cell after the symmetry.
+     */
+    static int transform(int t, int rows, int cols, int cell){
+        int row = cell / cols;
+        int col = cell % cols;
+        if((t & 1) != 0){
+            int swap = row;
+            row = col;
+            col = swap;
+            swap = rows;
+            rows = cols;
+            cols = swap;
+        }
+        if((t & 2) != 0){
+            row = rows - 1 - row;
+        }
+        if((t & 4) != 0){
+            col = cols - 1 - col;
+        }
+        return row * cols + col;
+    }
+
+    /**
+     * @return the columns a puzzle has after symmetry t.
+     */
+    private static int transformedCols(Puzzle puzzle, int t){
+        return (t & 1) != 0 ? puzzle.rows : puzzle.cols;
+    }
+
+    /**
+     * Picks the symmetry that gives the smallest layout, comparing cell by cell without building any of them.
+     * @param puzzle the puzzle being keyed
+     * @return the canonical symmetry.
+     */
+    private static int canonical(Puzzle puzzle){
+        int size = puzzle.rows * puzzle.cols;
+        int best = 0;
+        int[] bestInverse = inverse(puzzle, 0);
+        for(int t = 1; t < 8; t++){
+            int rowsT = (t & 1) != 0 ? puzzle.cols : puzzle.rows;
+            int bestRows = (best & 1) != 0 ? puzzle.cols : puzzle.rows;
+            if(rowsT != bestRows){
+                // Compare dimensions first, as the layout bytes do.
+                if(rowsT < bestRows){
+                    best = t;
+                    bestInverse = inverse(puzzle, t);
+                }
+                continue;
+            }
+            int[] inv = inverse(puzzle, t);
+            for(int cell = 0; cell < size; cell++){
+                int a = puzzle.need[inv[cell]];
+                int b = puzzle.need[bestInverse[cell]];
+                if(a != b){
+                    if(a < b){
+                        best = t;
+                        bestInverse = inv;
+                    }
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return for every cell after symmetry t, the original cell that lands there.
+     */
+    private static int[] inverse(Puzzle puzzle, int t){
+        int size = puzzle.rows * puzzle.cols;
+        int[] inv = new int[size];
+        for(int cell = 0; cell < size; cell++){
+            inv[transform(t, puzzle.rows, puzzle.cols, cell)] = cell;
+        }
+        return inv;
+    }
+
+    /**
+     * @return the key of a puzzle seen through symmetry t.
+     */
+    private static Key key(Puzzle puzzle, int t){
+        int size = puzzle.rows * puzzle.cols;
+        byte[] layout = new byte[8 + size];
+        int rows = (t & 1) != 0 ? puzzle.cols : puzzle.rows;
+        int cols = transformedCols(puzzle, t);
+        for(int i = 0; i < 4; i++){
+            layout[i] = (byte)(rows >>> (24 - 8 * i));
+            layout[4 + i] = (byte)(cols >>> (24 - 8 * i));
+        }
+        for(int cell = 0; cell < size; cell++){
+            layout[8 + transform(t, puzzle.rows, puzzle.cols, cell)] = (byte)(puzzle.need[cell] + 1);
+        }
+        return new Key(layout);
+    }
+
+    /**
+     * @return the lasers of a solution moved into the canonical orientation.
+     */
+    private static int[] toCanonical(Puzzle puzzle, int t, Solution solution){
+        int[] lasers = new int[solution.size()];
+        for(int i = 0; i < lasers.length; i++){
+            int cell = solution.getRow(i) * puzzle.cols + solution.getCol(i);
+            lasers[i] = transform(t, puzzle.rows, puzzle.cols, cell);
+        }
+        return lasers;
+    }
+
+    /**
+     * @return canonical lasers turned back into a solution for the puzzle as it was given.
+     */
+    private static Solution fromCanonical(Puzzle puzzle, int t, int[] canonical){
+        int[] inv = inverse(puzzle, t);
+        int[] lasers = new int[canonical.length];
+        for(int i = 0; i < lasers.length; i++){
+            lasers[i] = inv[canonical[i]];
+        }
+        Arrays.sort(lasers);
+        return new Solution(puzzle.cols, lasers);
+    }
+
+    /**
+     * @return the spill file of a key.
+     */
+    private File spillFile(Key key){
+        return new File(spillDir, Long.toHexString(key.hash) + ".sol");
+    }
+
+    /**
+     * Writes an entry to the spill directory. It is written to a temporary file and renamed into place, so a
+     * lookup on another thread never reads half of it. Failures only cost a future cache miss, so they are
+     * ignored.
+     */
+    private void spill(Key key, int[] lasers){
+        if(spillDir == null){
+            return;
+        }
+        File temp = null;
+        try{
+            temp = File.createTempFile(Long.toHexString(key.hash), ".tmp", spillDir);
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))){
+                out.writeInt(key.layout.length);
+                out.write(key.layout);
+                out.writeInt(lasers == UNSOLVABLE ? -1 : lasers.length);
+                for(int laser : lasers){
+                    out.writeInt(laser);
+                }
+            }
+            Files.move(temp.toPath(), spillFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }catch(IOException e){
+            if(temp != null){
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads an entry back from the spill directory.
+     * @return the canonical lasers, UNSOLVABLE, or null if the key was never spilled.
+     */
+    private int[] unspill(Key key){
+        if(spillDir == null){
+            return null;
+        }
+        File file = spillFile(key);
+        if(!file.isFile()){
+            return null;
+        }
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            byte[] layout = new byte[in.readInt()];
+            in.readFully(layout);
+            if(!Arrays.equals(layout, key.layout)){
+                // Another layout with the same hash.
+                return null;
+            }
+            int n = in.readInt();
+            if(n < 0){
+                return UNSOLVABLE;
+            }
+            int[] lasers = new int[n];
+            for(int i = 0; i < n; i++){
+                lasers[i] = in.readInt();
+            }
+            return lasers;
+        }catch(IOException e){
+            return null;
+        }
+    }
+}
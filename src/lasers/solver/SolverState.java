@@ -0,0 +1,397 @@
+package lasers.solver;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SolverState.java
+ * @language: Java 14
+ *
+ * The mutable side of a search: which floor cells hold lasers, which are known to be empty, and the counts
+ * needed to propagate pillar and coverage constraints. Every assignment is written to a trail so a branch can
+ * be undone back to a mark without copying the board.
+ */
+
+class SolverState {
+    static final byte UNKNOWN = 0;
+    static final byte LASER = 1;
+    static final byte EMPTY = 2;
+    static final byte PILLAR = 3;
+
+    final Puzzle puzzle;
+    final byte[] cell;          // State of every cell
+    final int[] rowLaser;       // Laser inside each row segment, -1 if none
+    final int[] colLaser;       // Laser inside each column segment, -1 if none
+    final int[] rowOpen;        // UNKNOWN cells left in each row segment
+    final int[] colOpen;        // UNKNOWN cells left in each column segment
+    final int[] pillarLasers;   // Lasers next to each numbered pillar
+    final int[] pillarOpen;     // UNKNOWN cells next to each numbered pillar
+
+    private int[] trail;        // Cells in the order they were assigned
+    private int trailSize;
+    private int[] queue;        // Constraints waiting to be checked, cells first then n + pillar
+    private int queueSize;
+
+    long forced;                // Cells assigned by propagation rather than by a branch
+
+    /**
+     * Creates a state where every floor cell is still open.
+     * @param puzzle the puzzle being searched.
+     */
+    SolverState(Puzzle puzzle){
+        this.puzzle = puzzle;
+        int size = puzzle.rows * puzzle.cols;
+        this.cell = new byte[size];
+        this.rowLaser = new int[puzzle.rowSegCells.length];
+        this.colLaser = new int[puzzle.colSegCells.length];
+        this.rowOpen = new int[puzzle.rowSegCells.length];
+        this.colOpen = new int[puzzle.colSegCells.length];
+        this.pillarLasers = new int[puzzle.pillars.length];
+        this.pillarOpen = new int[puzzle.pillars.length];
+        this.trail = new int[size];
+        this.queue = new int[64];
+        for(int c = 0; c < size; c++){
+            if(puzzle.need[c] != Puzzle.FLOOR){
+                cell[c] = PILLAR;
+            }
+        }
+        for(int s = 0; s < rowLaser.length; s++){
+            rowLaser[s] = -1;
+            rowOpen[s] = puzzle.rowSegCells[s].length;
+        }
+        for(int s = 0; s < colLaser.length; s++){
+            colLaser[s] = -1;
+            colOpen[s] = puzzle.colSegCells[s].length;
+        }
+        for(int p = 0; p < pillarOpen.length; p++){
+            pillarOpen[p] = puzzle.pillarCells[p].length;
+        }
+    }
+
+    /**
+     * Copy constructor used to hand a board to another thread. The trail is not copied, so the copy can not be
+     * undone past the point it was made.
+     * @param other the state being copied.
+     */
+    SolverState(SolverState other){
+        this.puzzle = other.puzzle;
+        this.cell = other.cell.clone();
+        this.rowLaser = other.rowLaser.clone();
+        this.colLaser = other.colLaser.clone();
+        this.rowOpen = other.rowOpen.clone();
+        this.colOpen = other.colOpen.clone();
+        this.pillarLasers = other.pillarLasers.clone();
+        this.pillarOpen = other.pillarOpen.clone();
+        this.trail = new int[other.trail.length];
+        this.queue = new int[64];
+    }
+
+    /**
+     * @return a mark that undo can later return to.
+     */
+    int mark(){
+        return trailSize;
+    }
+
+    /**
+     * Undoes every assignment made after the mark.
+     * @param mark a value previously returned by mark()
+     */
+    void undo(int mark){
+        while(trailSize > mark){
+            int c = trail[--trailSize];
+            int[] adjacent = puzzle.cellPillars[c];
+            if(cell[c] == LASER){
+                rowLaser[puzzle.rowSeg[c]] = -1;
+                colLaser[puzzle.colSeg[c]] = -1;
+                for(int p : adjacent){
+                    pillarLasers[p]--;
+                }
+            }
+            rowOpen[puzzle.rowSeg[c]]++;
+            colOpen[puzzle.colSeg[c]]++;
+            for(int p : adjacent){
+                pillarOpen[p]++;
+            }
+            cell[c] = UNKNOWN;
+        }
+        queueSize = 0;
+    }
+
+    /**
+     * @param c a floor cell
+     * @return true if a laser in the cell's row or column segment lights it up.
+     */
+    boolean covered(int c){
+        return rowLaser[puzzle.rowSeg[c]] >= 0 || colLaser[puzzle.colSeg[c]] >= 0;
+    }
+
+    /**
+     * Counts the open cells that could still light up a cell.
+     * @param c an uncovered floor cell
+     * @return the number of UNKNOWN cells in its row and column segments.
+     */
+    int candidates(int c){
+        int count = rowOpen[puzzle.rowSeg[c]] + colOpen[puzzle.colSeg[c]];
+        // The cell itself sits in both segments.
+        if(cell[c] == UNKNOWN){
+            count--;
+        }
+        return count;
+    }
+
+    /**
+     * Places a laser on an open cell and queues up everything it affects.
+     * @param c the cell
+     * @return false if the laser would see another laser.
+     */
+    boolean placeLaser(int c){
+        if(cell[c] != UNKNOWN){
+            return cell[c] == LASER;
+        }
+        int rs = puzzle.rowSeg[c];
+        int cs = puzzle.colSeg[c];
+        if(rowLaser[rs] >= 0 || colLaser[cs] >= 0){
+            return false;
+        }
+        assign(c, LASER);
+        rowLaser[rs] = c;
+        colLaser[cs] = c;
+        for(int p : puzzle.cellPillars[c]){
+            pillarLasers[p]++;
+        }
+        // Nothing else in sight of the laser can hold one.
+        for(int other : puzzle.rowSegCells[rs]){
+            if(cell[other] == UNKNOWN){
+                markEmpty(other);
+            }
+        }
+        for(int other : puzzle.colSegCells[cs]){
+            if(cell[other] == UNKNOWN){
+                markEmpty(other);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rules out a laser on an open cell and queues up everything it affects.
+     * @param c the cell
+     * @return false if the cell already holds a laser.
+     */
+    boolean placeEmpty(int c){
+        if(cell[c] != UNKNOWN){
+            return cell[c] == EMPTY;
+        }
+        markEmpty(c);
+        return true;
+    }
+
+    /**
+     * Marks an UNKNOWN cell as EMPTY, queuing the cells and pillars that lost a candidate.
+     * @param c the cell
+     */
+    private void markEmpty(int c){
+        assign(c, EMPTY);
+        // Cells sharing a segment lost a candidate, so they need to be rechecked if still dark.
+        int rs = puzzle.rowSeg[c];
+        int cs = puzzle.colSeg[c];
+        if(rowLaser[rs] < 0){
+            for(int other : puzzle.rowSegCells[rs]){
+                enqueue(other);
+            }
+        }
+        if(colLaser[cs] < 0){
+            for(int other : puzzle.colSegCells[cs]){
+                enqueue(other);
+            }
+        }
+    }
+
+    /**
+     * Records an assignment on the trail and updates the open counts.
+     * @param c the cell
+     * @param state LASER or EMPTY
+     */
+    private void assign(int c, byte state){
+        cell[c] = state;
+        trail[trailSize++] = c;
+        rowOpen[puzzle.rowSeg[c]]--;
+        colOpen[puzzle.colSeg[c]]--;
+        int n = cell.length;
+        for(int p : puzzle.cellPillars[c]){
+            pillarOpen[p]--;
+            enqueue(n + p);
+        }
+    }
+
+    private void enqueue(int item){
+        if(queueSize == queue.length){
+            int[] bigger = new int[queue.length * 2];
+            System.arraycopy(queue, 0, bigger, 0, queueSize);
+            queue = bigger;
+        }
+        queue[queueSize++] = item;
+    }
+
+    /**
+     * Queues every pillar and floor cell, used once before the search starts.
+     */
+    void enqueueAll(){
+        for(int c = 0; c < cell.length; c++){
+            if(cell[c] != PILLAR){
+                enqueue(c);
+            }
+        }
+        for(int p = 0; p < puzzle.pillars.length; p++){
+            enqueue(cell.length + p);
+        }
+    }
+
+    /**
+     * Applies the pillar and coverage rules until nothing else is forced.
+     * @return false if a constraint can no longer be met.
+     */
+    boolean propagate(){
+        int n = cell.length;
+        while(queueSize > 0){
+            int item = queue[--queueSize];
+            if(item >= n){
+                if(!checkPillar(item - n)){
+                    queueSize = 0;
+                    return false;
+                }
+            }else if(!checkCover(item)){
+                queueSize = 0;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A numbered pillar that already has its lasers empties its other neighbours, and one that needs every open
+     * neighbour fills them.
+     * @param p the pillar
+     * @return false if the pillar can no longer be satisfied.
+     */
+    private boolean checkPillar(int p){
+        int need = puzzle.need[puzzle.pillars[p]];
+        int lasers = pillarLasers[p];
+        int open = pillarOpen[p];
+        if(lasers > need || lasers + open < need){
+            return false;
+        }
+        if(open == 0){
+            return true;
+        }
+        if(lasers == need){
+            for(int c : puzzle.pillarCells[p]){
+                if(cell[c] == UNKNOWN){
+                    forced++;
+                    markEmpty(c);
+                }
+            }
+        }else if(lasers + open == need){
+            for(int c : puzzle.pillarCells[p]){
+                if(cell[c] == UNKNOWN){
+                    forced++;
+                    if(!placeLaser(c)){
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A dark cell with a single candidate left has to be lit by that candidate.
+     * @param c the cell
+     * @return false if the cell can no longer be lit.
+     */
+    private boolean checkCover(int c){
+        if(covered(c)){
+            return true;
+        }
+        int count = candidates(c);
+        if(count == 0){
+            return false;
+        }
+        if(count == 1){
+            forced++;
+            return placeLaser(onlyCandidate(c));
+        }
+        return true;
+    }
+
+    /**
+     * @param c an uncovered floor cell
+     * @return the first UNKNOWN cell in its row or column segment.
+     */
+    int onlyCandidate(int c){
+        for(int other : puzzle.rowSegCells[puzzle.rowSeg[c]]){
+            if(cell[other] == UNKNOWN){
+                return other;
+            }
+        }
+        for(int other : puzzle.colSegCells[puzzle.colSeg[c]]){
+            if(cell[other] == UNKNOWN){
+                return other;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of a numbered pillar that still needs lasers, -1 if all have enough.
+     */
+    int unsatisfiedPillar(){
+        for(int p = 0; p < pillarLasers.length; p++){
+            if(pillarLasers[p] < puzzle.need[puzzle.pillars[p]]){
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Picks the uncovered cell with the fewest ways left to light it.
+     * @return the cell, or -1 if every cell is lit.
+     */
+    int mostConstrainedDarkCell(){
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        for(int c = 0; c < cell.length; c++){
+            if(cell[c] != PILLAR && !covered(c)){
+                int count = candidates(c);
+                if(count < bestCount){
+                    best = c;
+                    bestCount = count;
+                    if(count <= 2){
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the cells currently holding lasers.
+     */
+    int[] lasers(){
+        int count = 0;
+        for(byte state : cell){
+            if(state == LASER){
+                count++;
+            }
+        }
+        int[] lasers = new int[count];
+        int i = 0;
+        for(int c = 0; c < cell.length; c++){
+            if(cell[c] == LASER){
+                lasers[i++] = c;
+            }
+        }
+        return lasers;
+    }
+}
@@ -0,0 +1,39 @@
+package lasers;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: AllTests.java
+ * @language: Java 14
+ *
+ * Runs every check under test/. A check that fails throws, which stops the run with a stack trace and a non-zero
+ * exit status. Run from the project root, since the checks read the safes in data/:
+ *      javac -d out/test $(find src test -name '*.java')
+ *      java -cp out/test lasers.AllTests
+ */
+
+import lasers.io.SafeArchiveTest;
+import lasers.model.SafeTest;
+import lasers.ptui.CommandLogTest;
+import lasers.solver.BacktrackSolverTest;
+
+import java.io.IOException;
+
+public class AllTests {
+
+    /**
+     * The main method; runs the checks in order and prints how many held.
+     * @param args not used.
+     */
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        BacktrackSolverTest.run();
+        System.out.println("BacktrackSolverTest passed");
+        SafeTest.run();
+        System.out.println("SafeTest passed");
+        SafeArchiveTest.run();
+        System.out.println("SafeArchiveTest passed");
+        CommandLogTest.run();
+        System.out.println("CommandLogTest passed");
+        System.out.println(Check.getPassed() + " checks passed in " + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+}
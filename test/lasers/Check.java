@@ -0,0 +1,49 @@
+package lasers;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: Check.java
+ * @language: Java 14
+ *
+ * The assertions the checks under test/ are written with. A failed check throws an AssertionError naming what
+ * was checked, so the first one to fail stops AllTests with a stack trace pointing at it.
+ */
+
+import java.util.Objects;
+
+public final class Check {
+    private static long passed;     // checks that held since the run started
+
+    private Check(){
+    }
+
+    /**
+     * @param condition what must hold
+     * @param what a description of the check, shown if it fails.
+     */
+    public static void that(boolean condition, String what){
+        if(!condition){
+            throw new AssertionError(what);
+        }
+        passed++;
+    }
+
+    /**
+     * @param expected the value wanted
+     * @param actual the value found
+     * @param what a description of the check, shown with both values if it fails.
+     */
+    public static void equal(Object expected, Object actual, String what){
+        if(!Objects.equals(expected, actual)){
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+        passed++;
+    }
+
+    /**
+     * @return the number of checks that held so far.
+     */
+    public static long getPassed(){
+        return passed;
+    }
+}
@@ -0,0 +1,119 @@
+package lasers.io;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SafeArchiveTest.java
+ * @language: Java 14
+ *
+ * Checks that packing SafeFiles into an archive and unpacking it again keeps every safe, and every solution
+ * written under one, exactly as it was, and that packing the unpacked file gives back the same archive.
+ */
+
+import lasers.Check;
+import lasers.generator.SafeGenerator;
+import lasers.model.SafeReader;
+import lasers.model.SafeWriter;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SafeArchiveTest {
+
+    /**
+     * One safe as read from a SafeFile.
+     */
+    private static final class Entry {
+        final int rows;
+        final int cols;
+        final byte[] grid;
+        final boolean[] solution;   // null if no solution was written under the safe
+
+        Entry(int rows, int cols, byte[] grid, boolean[] solution){
+            this.rows = rows;
+            this.cols = cols;
+            this.grid = grid;
+            this.solution = solution;
+        }
+    }
+
+    public static void run() throws IOException {
+        Path generated = Files.createTempFile("safes", ".txt");
+        Path archive = Files.createTempFile("safes", ".lsaf");
+        Path unpacked = Files.createTempFile("unpacked", ".txt");
+        Path repacked = Files.createTempFile("repacked", ".lsaf");
+        try{
+            writeGenerated(generated.toString());
+            String[] sources = {"data/safe0.txt", "data/safe1.txt", generated.toString()};
+            List<Entry> expected = new ArrayList<>();
+            for(String source : sources){
+                expected.addAll(read(source));
+            }
+
+            Check.equal((long)expected.size(), ArchiveConverter.pack(archive.toString(), sources), "safes packed");
+            try(SafeArchive in = new SafeArchive(archive.toString())){
+                Check.equal((long)expected.size(), in.size(), "safes in the archive");
+                for(int i = 0; i < expected.size(); i++){
+                    Entry entry = expected.get(i);
+                    Check.equal(entry.rows, in.getRows(i), "rows of safe " + i);
+                    Check.equal(entry.cols, in.getCols(i), "columns of safe " + i);
+                    Check.that(Arrays.equals(entry.grid, in.getGrid(i)), "grid of safe " + i);
+                    Check.equal(entry.solution != null, in.hasSolution(i), "safe " + i + " has a solution");
+                    Check.that(Arrays.equals(entry.solution, in.getSolution(i)), "solution of safe " + i);
+                }
+            }
+
+            Check.equal((long)expected.size(), ArchiveConverter.unpack(archive.toString(), unpacked.toString()),
+                    "safes unpacked");
+            List<Entry> actual = read(unpacked.toString());
+            Check.equal(expected.size(), actual.size(), "safes in the unpacked file");
+            for(int i = 0; i < expected.size(); i++){
+                Check.equal(expected.get(i).rows, actual.get(i).rows, "unpacked rows of safe " + i);
+                Check.equal(expected.get(i).cols, actual.get(i).cols, "unpacked columns of safe " + i);
+                Check.that(Arrays.equals(expected.get(i).grid, actual.get(i).grid), "unpacked grid of safe " + i);
+                Check.that(Arrays.equals(expected.get(i).solution, actual.get(i).solution),
+                        "unpacked solution of safe " + i);
+            }
+
+            ArchiveConverter.pack(repacked.toString(), unpacked.toString());
+            Check.that(Arrays.equals(Files.readAllBytes(archive), Files.readAllBytes(repacked)),
+                    "packing the unpacked file gives the same archive");
+        }finally{
+            Files.deleteIfExists(generated);
+            Files.deleteIfExists(archive);
+            Files.deleteIfExists(unpacked);
+            Files.deleteIfExists(repacked);
+        }
+    }
+
+    /**
+     * Writes generated safes with their solutions, then one safe with none, to a SafeFile.
+     */
+    private static void writeGenerated(String safeFile) throws IOException {
+        try(Writer out = new BufferedWriter(new FileWriter(safeFile))){
+            new SafeGenerator(0.15, 0.1).generateAll(7, 9, 30, 5, out);
+            StringBuilder text = new StringBuilder();
+            byte[] grid = {SafeReader.FLOOR, 10, 0, SafeReader.FLOOR, 4, SafeReader.FLOOR};
+            SafeWriter.write(text, 2, 3, grid, null);
+            out.append(text);
+        }
+    }
+
+    /**
+     * @return every safe of a SafeFile, in order.
+     */
+    private static List<Entry> read(String safeFile) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        SafeReader reader = SafeReader.open(safeFile);
+        while(reader.advance()){
+            entries.add(new Entry(reader.getRows(), reader.getCols(), reader.getGrid(), reader.readSolution()));
+        }
+        return entries;
+    }
+}
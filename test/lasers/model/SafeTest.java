@@ -0,0 +1,202 @@
+package lasers.model;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: SafeTest.java
+ * @language: Java 14
+ *
+ * Checks the state Safe keeps up to date move by move (beam counts, violation counters, the Zobrist hash and the
+ * undo journal) against a full rescan of the board after every move. The rescan walks each cell's row and
+ * column itself, so it shares no code with the incremental bookkeeping it checks.
+ */
+
+import lasers.Check;
+import lasers.generator.SafeGenerator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static lasers.model.Card.cType.*;
+
+public class SafeTest {
+
+    public static void run() throws IOException {
+        Random random = new Random(142);
+        playAgainstRescan(Safe.load("data/safe0.txt"), random, 400);
+        playAgainstRescan(Safe.load("data/safe1.txt"), random, 400);
+        SafeGenerator generator = new SafeGenerator(0.15, 0.1);
+        for(long seed = 0; seed < 40; seed++){
+            playAgainstRescan(generator.generate(1 + random.nextInt(12), 1 + random.nextInt(12), seed).toSafe(),
+                    random, 150);
+        }
+        handPlacedBeams();
+    }
+
+    /**
+     * add(BEAM) leaves a pillar alone, and a beam placed by hand on the floor is dropped by addAll, which works
+     * every beam out again from the lasers.
+     */
+    static void handPlacedBeams(){
+        byte f = SafeReader.FLOOR;
+        byte[] grid = {f, f, f, f, 10, f, f, f, f};
+        Safe safe = new Safe(3, 3, grid);
+        long hash = safe.getHash();
+        Check.that(!safe.add(1, 1, BEAM), "a beam is not placed on a pillar");
+        Check.equal(PILLAR, safe.getCardType(1, 1), "the pillar under a rejected beam");
+        Check.equal(hash, safe.getHash(), "hash after a rejected beam");
+        rescan(safe);
+
+        Check.that(safe.add(0, 0, BEAM), "a beam is placed on the floor");
+        Check.equal(BEAM, safe.getCardType(0, 0), "the hand placed beam");
+        Check.equal(1, safe.addAll(new int[]{8}), "lasers placed by addAll(int[])");
+        Check.equal(NONE, safe.getCardType(0, 0), "addAll(int[]) drops the hand placed beam");
+        rescan(safe);
+
+        safe = new Safe(3, 3, grid);
+        safe.add(0, 0, BEAM);
+        boolean[] lasers = new boolean[9];
+        lasers[8] = true;
+        Check.equal(1, safe.addAll(lasers), "lasers placed by addAll(boolean[])");
+        Check.equal(NONE, safe.getCardType(0, 0), "addAll(boolean[]) drops the hand placed beam");
+        rescan(safe);
+    }
+
+    /**
+     * Makes random adds, removes, undos, redos and rollbacks on a safe, rescanning it after each one, then undoes
+     * and redoes the whole journal.
+     * @param safe a safe with no lasers on it
+     * @param random where the moves come from
+     * @param moves how many moves to make.
+     */
+    static void playAgainstRescan(Safe safe, Random random, int moves){
+        int rows = safe.getRows();
+        int cols = safe.getCols();
+        int checkpoint = safe.checkpoint();
+        for(int move = 0; move < moves; move++){
+            int row = random.nextInt(rows);
+            int col = random.nextInt(cols);
+            boolean laser = safe.getCardType(row, col) == LASER;
+            int choice = random.nextInt(10);
+            if(choice < 5){
+                Check.equal(!laser && safe.getCardType(row, col) != PILLAR, safe.add(row, col, LASER),
+                        "add at " + row + "," + col);
+            }else if(choice < 7){
+                Check.equal(laser, safe.remove(row, col), "remove at " + row + "," + col);
+            }else if(choice < 8){
+                safe.undo();
+            }else if(choice < 9){
+                safe.redo();
+            }else if(random.nextInt(4) == 0){
+                safe.rollbackTo(checkpoint);
+            }else{
+                checkpoint = safe.checkpoint();
+            }
+            rescan(safe);
+        }
+
+        //from the newest move in the journal, undoing everything and redoing it again must end where it began.
+        while(safe.redo()){
+            rescan(safe);
+        }
+        boolean[] lasers = lasers(safe);
+        while(safe.undo()){
+            rescan(safe);
+        }
+        Check.that(!anyLaser(lasers(safe)), "undoing every move empties the safe");
+        while(safe.redo()){
+            rescan(safe);
+        }
+        Check.that(Arrays.equals(lasers, lasers(safe)), "redoing every move puts the lasers back");
+    }
+
+    /**
+     * Checks every cell, verify, the violations list and the hash against a scan of the whole board.
+     */
+    static void rescan(Safe safe){
+        int firstBad = -1;
+        int violations = 0;
+        for(int row = 0; row < safe.getRows(); row++){
+            for(int col = 0; col < safe.getCols(); col++){
+                Card.cType type = safe.getCardType(row, col);
+                if(type != PILLAR && type != LASER){
+                    Check.equal(seesLaser(safe, row, col) ? BEAM : NONE, type, "beam at " + row + "," + col);
+                }
+                if(!valid(safe, row, col)){
+                    violations++;
+                    if(firstBad < 0){
+                        firstBad = row * safe.getCols() + col;
+                    }
+                }
+            }
+        }
+        Check.equal(firstBad < 0, safe.verify(), "verify");
+        Check.equal(violations, safe.violations().size(), "violations");
+        if(firstBad >= 0){
+            Card first = safe.violations().get(0);
+            Check.equal(firstBad, first.getRow() * safe.getCols() + first.getCol(), "first violation");
+        }
+        Check.equal(SafeSnapshot.of(safe).getHash(), safe.getHash(), "hash");
+    }
+
+    /**
+     * @return true if a laser shines on (row, col) from another cell of its row or column.
+     */
+    private static boolean seesLaser(Safe safe, int row, int col){
+        int[][] directions = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+        for(int[] direction : directions){
+            int r = row + direction[0];
+            int c = col + direction[1];
+            while(r >= 0 && c >= 0 && r < safe.getRows() && c < safe.getCols()
+                    && safe.getCardType(r, c) != PILLAR){
+                if(safe.getCardType(r, c) == LASER){
+                    return true;
+                }
+                r += direction[0];
+                c += direction[1];
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if (row, col) follows the rules verify checks.
+     */
+    private static boolean valid(Safe safe, int row, int col){
+        switch(safe.getCardType(row, col)){
+            case PILLAR:
+                int need = safe.getnLasers(row, col);
+                int adjacent = 0;
+                int[][] neighbours = {{row + 1, col}, {row - 1, col}, {row, col + 1}, {row, col - 1}};
+                for(int[] cell : neighbours){
+                    if(cell[0] >= 0 && cell[1] >= 0 && cell[0] < safe.getRows() && cell[1] < safe.getCols()
+                            && safe.getCardType(cell[0], cell[1]) == LASER){
+                        adjacent++;
+                    }
+                }
+                // Any lasers >4 means it can have any amount of lasers.
+                return need > 4 || adjacent == need;
+            case LASER:
+                return !seesLaser(safe, row, col);
+            default:
+                return seesLaser(safe, row, col);
+        }
+    }
+
+    private static boolean[] lasers(Safe safe){
+        boolean[] lasers = new boolean[safe.getRows() * safe.getCols()];
+        for(int cell = 0; cell < lasers.length; cell++){
+            lasers[cell] = safe.getCardType(cell / safe.getCols(), cell % safe.getCols()) == LASER;
+        }
+        return lasers;
+    }
+
+    private static boolean anyLaser(boolean[] lasers){
+        for(boolean laser : lasers){
+            if(laser){
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,184 @@
+package lasers.ptui;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: CommandLogTest.java
+ * @language: Java 14
+ *
+ * Checks that CommandLog.apply, which places long runs of adds with one addAll, leaves a safe exactly as replay
+ * does running the same input one command at a time: the same lasers, and the same moves to undo and redo after.
+ * Short runs on a large safe must stay as cheap as the adds one at a time.
+ */
+
+import lasers.Check;
+import lasers.model.Card;
+import lasers.model.Safe;
+import lasers.model.SafeReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class CommandLogTest {
+    //commands the random inputs are made of, weighted towards adds so runs of them form.
+    private static final String[] COMMANDS = {"a", "a", "a", "a", "a", "r", "r", "u", "y", "v", "d", "h", "x", "q"};
+
+    public static void run() throws IOException {
+        applyMatchesReplay("data/safe0.txt", "data/input0.txt");
+        applyMatchesReplay("data/safe1.txt", "data/input1.txt");
+        Random random = new Random(25);
+        Path input = Files.createTempFile("input", ".txt");
+        try{
+            for(int i = 0; i < 200; i++){
+                String safeFile = i % 2 == 0 ? "data/safe0.txt" : "data/safe1.txt";
+                int size = i % 2 == 0 ? 4 : 8;
+                Files.write(input, randomInput(random, size, 5 + random.nextInt(60)));
+                applyMatchesReplay(safeFile, input.toString());
+            }
+        }finally{
+            Files.deleteIfExists(input);
+        }
+        shortRunsOnLargeSafe();
+        loadRecompilesChangedFiles();
+    }
+
+    /**
+     * load hands back the cached log while the file is unchanged, and compiles it again once it changes.
+     */
+    static void loadRecompilesChangedFiles() throws IOException {
+        Path input = Files.createTempFile("input", ".txt");
+        try{
+            Files.write(input, List.of("a 0 0", "v"));
+            CommandLog first = CommandLog.load(input.toString());
+            Check.that(CommandLog.load(input.toString()) == first, "an unchanged file is not compiled again");
+            Files.write(input, List.of("a 0 0", "a 1 1", "v"));
+            CommandLog second = CommandLog.load(input.toString());
+            Check.that(second != first, "a changed file is compiled again");
+            Check.equal(first.size() + 2, second.size(), "the changed file's opcode stream");
+        }finally{
+            Files.deleteIfExists(input);
+        }
+    }
+
+    /**
+     * Runs of two or three adds on a large safe must cost about what the adds cost one at a time, not a sweep of
+     * the whole safe per run.
+     */
+    static void shortRunsOnLargeSafe() throws IOException {
+        int size = 400;
+        byte[] grid = new byte[size * size];
+        for(int cell = 0; cell < grid.length; cell++){
+            grid[cell] = cell % 7 == 0 ? 10 : SafeReader.FLOOR;
+        }
+        Random random = new Random(7);
+        List<String> lines = new ArrayList<>();
+        List<int[]> adds = new ArrayList<>();
+        for(int run = 0; run < 300; run++){
+            for(int i = 2 + random.nextInt(2); i > 0; i--){
+                int row = random.nextInt(size);
+                int col = random.nextInt(size);
+                lines.add("a " + row + " " + col);
+                adds.add(new int[]{row, col});
+            }
+            lines.add("v");
+        }
+        Path input = Files.createTempFile("input", ".txt");
+        try{
+            Files.write(input, lines);
+            CommandLog log = CommandLog.compile(input.toString());
+            long applyTime = Long.MAX_VALUE;
+            long addTime = Long.MAX_VALUE;
+            Safe applied = null;
+            Safe added = null;
+            //the best of a few rounds, so the first round's warm up does not count.
+            for(int round = 0; round < 3; round++){
+                applied = new Safe(size, size, grid);
+                long start = System.nanoTime();
+                log.apply(applied);
+                applyTime = Math.min(applyTime, System.nanoTime() - start);
+                added = new Safe(size, size, grid);
+                start = System.nanoTime();
+                for(int[] add : adds){
+                    added.add(add[0], add[1], Card.cType.LASER);
+                }
+                addTime = Math.min(addTime, System.nanoTime() - start);
+            }
+            same(added, applied, "short runs on a " + size + "x" + size + " safe");
+            Check.that(applyTime < 4 * addTime + 50_000_000L, "short runs take " + applyTime / 1000
+                    + "us to apply, against " + addTime / 1000 + "us for the adds one at a time");
+        }finally{
+            Files.deleteIfExists(input);
+        }
+    }
+
+    /**
+     * Runs an input file on two copies of a safe, one through replay and one through apply, and compares them.
+     * @param safeFile the SafeFile both copies are loaded from
+     * @param inputFile the commands run on them.
+     */
+    static void applyMatchesReplay(String safeFile, String inputFile) throws IOException {
+        CommandLog log = CommandLog.compile(inputFile);
+        Safe replayed = Safe.load(safeFile);
+        Safe applied = Safe.load(safeFile);
+        log.replay(replayed, new PrintStream(new ByteArrayOutputStream()));
+        log.apply(applied);
+        String what = inputFile + " on " + safeFile;
+        same(replayed, applied, what);
+        //the journals must match too, so undoing and redoing walks both safes through the same boards.
+        int undos = 0;
+        while(replayed.undo()){
+            Check.that(applied.undo(), what + " undo " + undos);
+            same(replayed, applied, what + " after undo " + undos++);
+        }
+        Check.that(!applied.undo(), what + " has nothing more to undo");
+        int redos = 0;
+        while(replayed.redo()){
+            Check.that(applied.redo(), what + " redo " + redos);
+            same(replayed, applied, what + " after redo " + redos++);
+        }
+        Check.that(!applied.redo(), what + " has nothing more to redo");
+    }
+
+    private static void same(Safe expected, Safe actual, String what){
+        for(int row = 0; row < expected.getRows(); row++){
+            for(int col = 0; col < expected.getCols(); col++){
+                Check.equal(expected.getCardType(row, col), actual.getCardType(row, col),
+                        what + " at " + row + "," + col);
+            }
+        }
+        Check.equal(expected.getHash(), actual.getHash(), what + " hash");
+        Check.equal(expected.verify(), actual.verify(), what + " verify");
+    }
+
+    /**
+     * @param size the rows and columns of the safe, some coordinates fall just off it
+     * @param lines the number of commands
+     * @return the lines of an input file, with the odd malformed command.
+     */
+    private static List<String> randomInput(Random random, int size, int lines){
+        List<String> input = new ArrayList<>();
+        for(int i = 0; i < lines; i++){
+            String command = COMMANDS[random.nextInt(COMMANDS.length)];
+            if(command.equals("q") && random.nextInt(3) > 0){
+                command = "v";
+            }
+            if(command.equals("a") || command.equals("r")){
+                int choice = random.nextInt(20);
+                if(choice == 0){
+                    command += " 1";
+                }else if(choice == 1){
+                    command += " one 2";
+                }else{
+                    command += " " + random.nextInt(size + 1) + " " + random.nextInt(size + 1);
+                }
+            }
+            input.add(command);
+        }
+        return input;
+    }
+}
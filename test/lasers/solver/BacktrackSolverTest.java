@@ -0,0 +1,86 @@
+package lasers.solver;
+/**
+ * @author: George Link
+ * @author: Marshall Teichman
+ * @file: BacktrackSolverTest.java
+ * @language: Java 14
+ *
+ * Checks that the BacktrackSolver solves the safes in data/, and that whatever it finds really verifies on a
+ * Safe built from scratch rather than trusting its own propagation.
+ */
+
+import lasers.Check;
+import lasers.generator.GeneratedSafe;
+import lasers.generator.SafeGenerator;
+import lasers.model.Safe;
+import lasers.model.SafeReader;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class BacktrackSolverTest {
+
+    public static void run() throws IOException {
+        solvesDataSafe("data/safe0.txt");
+        solvesDataSafe("data/safe1.txt");
+        findsNothingOnUnsolvableSafe();
+        solvesGeneratedSafes();
+    }
+
+    /**
+     * Solves a safe from data/ and checks the solution against the one written under it.
+     * @param safeFile the SafeFile, relative to the project root.
+     */
+    static void solvesDataSafe(String safeFile) throws IOException {
+        SafeReader reader = SafeReader.open(safeFile);
+        Check.that(reader.advance(), safeFile + " holds a safe");
+        int rows = reader.getRows();
+        int cols = reader.getCols();
+        byte[] grid = reader.getGrid();
+        boolean[] written = reader.readSolution();
+        Check.that(written != null, safeFile + " has a solution written under it");
+
+        BacktrackSolver solver = new BacktrackSolver();
+        Safe safe = new Safe(rows, cols, grid);
+        Solution solution = solver.solve(safe);
+        Check.that(solution != null, safeFile + " is solved");
+        solution.applyTo(safe);
+        Check.that(safe.verify(), safeFile + " solution verifies");
+        Check.that(safe.violations().isEmpty(), safeFile + " solution leaves no violations");
+
+        long count = solver.countSolutions(new Puzzle(new Safe(rows, cols, grid)));
+        Check.that(count >= 1, safeFile + " has at least one solution");
+        if(count == 1){
+            boolean[] found = new boolean[rows * cols];
+            for(int i = 0; i < solution.size(); i++){
+                found[solution.getRow(i) * cols + solution.getCol(i)] = true;
+            }
+            Check.that(Arrays.equals(written, found), safeFile + " unique solution is the one written");
+        }
+    }
+
+    /**
+     * A floor cell whose only neighbour is a pillar wanting no lasers can never be lit.
+     */
+    static void findsNothingOnUnsolvableSafe(){
+        Safe safe = new Safe(1, 2, new byte[]{SafeReader.FLOOR, 0});
+        BacktrackSolver solver = new BacktrackSolver();
+        Check.that(solver.solve(safe) == null, "unsolvable safe has no solution");
+        Check.equal(0L, solver.countSolutions(new Puzzle(safe)), "unsolvable safe solution count");
+    }
+
+    /**
+     * Every generated safe is built around a solution, so the solver must find one for each.
+     */
+    static void solvesGeneratedSafes(){
+        SafeGenerator generator = new SafeGenerator(0.15, 0.1);
+        for(long seed = 0; seed < 100; seed++){
+            GeneratedSafe generated = generator.generate(3 + (int)(seed % 8), 3 + (int)(seed * 7 % 9), seed);
+            Safe safe = generated.toSafe();
+            Solution solution = new BacktrackSolver().solve(safe);
+            Check.that(solution != null, "generated safe " + seed + " is solved");
+            solution.applyTo(safe);
+            Check.that(safe.verify(), "generated safe " + seed + " solution verifies");
+        }
+    }
+}